@@ -1,8 +1,13 @@
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import controller.GraphicStockController;
 import controller.IController;
 import controller.TextStockController;
+import model.portfolio.Portfolio;
+import model.stock.StockRepository;
 import model.user.BasicUserData;
 import model.user.UserData;
 import view.GraphicView;
@@ -18,6 +23,17 @@ public class StocksProgram {
    * @param args any command lind arguments
    */
   public static void main(String[] args) throws InterruptedException {
+    // loading every stock in the data directory up front makes later lookups instant
+    List<String> options = new ArrayList<>(Arrays.asList(args));
+    if (options.remove("-preload")) {
+      System.err.println(StockRepository.getInstance().loadAll());
+    }
+    // stocks are reloaded whenever another program updates their file
+    if (options.remove("-watch")) {
+      StockRepository.getInstance().watch();
+    }
+    args = options.toArray(new String[0]);
+
     UserData userData = new BasicUserData();
     if (args.length == 0) {
       IController controller = new GraphicStockController(userData, new GraphicView());
@@ -26,10 +42,13 @@ public class StocksProgram {
       IController controller = new TextStockController(
               userData, new TextView(new InputStreamReader(System.in), System.out));
       controller.control();
+      userData.listPortfolios().forEach(Portfolio::close);
     } else {
       System.err.println("Invalid command-line arguments.");
       System.err.println("java -jar StocksProgram.jar for the graphical user interface");
       System.err.println("java -jar StocksProgram.jar -text for the text-based interface");
+      System.err.println("add -preload to load every stock in the data directory first");
+      System.err.println("add -watch to reload stocks when their data files change");
       System.exit(1);
     }
   }
@@ -16,6 +16,7 @@ import model.commands.LoadPortfolioCommand;
 import model.commands.PortfolioGetValueCommand;
 import model.portfolio.BasicPortfolio;
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioJournal;
 import model.user.UserData;
 import view.GraphicView;
 
@@ -90,7 +91,15 @@ public class GraphicStockController implements IController, ActionListener, List
     if (name == null || name.isEmpty()) {
       return;
     }
-    Portfolio newPortfolio = new BasicPortfolio(name);
+    PortfolioJournal journal = new PortfolioJournal(name);
+    if (journal.exists()) {
+      JOptionPane.showMessageDialog(view, "A portfolio named " + name
+              + " is already saved. Load it or choose another name.");
+      return;
+    }
+    BasicPortfolio newPortfolio = new BasicPortfolio(name);
+    // every trade is on disk as soon as it is made, even before the portfolio is saved
+    newPortfolio.setJournal(journal);
     userData.addPortfolio(newPortfolio);
     view.updatePortfolioList(userData.listPortfolios());
   }
@@ -7,7 +7,9 @@ import model.commands.PortfolioPerformanceCommand;
 import model.commands.PortfolioRebalanceCommand;
 import model.portfolio.BasicPortfolio;
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioJournal;
 import model.stock.Stock;
+import model.commands.AggregateValueCommand;
 import model.commands.Command;
 import model.commands.LoadPortfolioCommand;
 import model.commands.PortfolioGetValueCommand;
@@ -94,6 +96,9 @@ public class TextStockController implements IController {
         }
         state = ControllerState.STOCK_MENU;
         break;
+      case "3":
+        allPortfoliosValue();
+        break;
       case "q":
       case "quit":
         state = ControllerState.QUIT;
@@ -104,6 +109,18 @@ public class TextStockController implements IController {
     }
   }
 
+  private void allPortfoliosValue() {
+    String date = formatDate(setDate());
+    Command<AggregateValueCommand.Report> command = new AggregateValueCommand(date);
+    try {
+      AggregateValueCommand.Report report = userData.execute(command);
+      lineSeparator();
+      view.showMessage(report + "\n");
+    } catch (IllegalArgumentException e) {
+      view.showMessage(e.getMessage() + " Please try again.\n");
+    }
+  }
+
   private void helpPortfolioMenu(String userInput) {
     switch (userInput) {
       case "1":
@@ -129,7 +146,16 @@ public class TextStockController implements IController {
   private void createPortfolio() {
     view.showMessage("Name your portfolio: ");
     String name = view.getUserInput();
-    Portfolio portfolio = new BasicPortfolio(name);
+    PortfolioJournal journal = new PortfolioJournal(name);
+    if (journal.exists()) {
+      lineSeparator();
+      view.showMessage("A portfolio named " + name + " is already saved. "
+              + "Load it or choose another name.\n");
+      return;
+    }
+    BasicPortfolio portfolio = new BasicPortfolio(name);
+    // every trade is on disk as soon as it is made, even before the portfolio is saved
+    portfolio.setJournal(journal);
     userData.addPortfolio(portfolio);
     lineSeparator();
     view.showMessage(name + " portfolio created.\n");
@@ -393,9 +419,10 @@ public class TextStockController implements IController {
 
   private void lastClosingPrice() {
     lineSeparator();
-    view.showMessage("Last Closing Price: $"
-            + userData.getCurrentStock().getAllClosingPrices()
-            .get(userData.getCurrentStock().getAllClosingPrices().size() - 1) + "\n");
+    Stock stock = userData.getCurrentStock();
+    int size = stock.getSize();
+    view.showMessage("Last Closing Price: $" + stock.getClosingPrices(size - 1, size).get(0)
+            + "\n");
   }
 
   private void closingPrice() {
@@ -575,6 +602,7 @@ public class TextStockController implements IController {
     lineSeparator();
     view.showMessage("1: View Portfolios\n");
     view.showMessage("2: View Stocks\n");
+    view.showMessage("3: Value All Portfolios\n");
     quitPrompt();
   }
 
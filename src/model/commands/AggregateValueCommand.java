@@ -0,0 +1,392 @@
+package model.commands;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.portfolio.Portfolio;
+import model.portfolio.PortfolioValuation;
+import model.stock.Stock;
+import model.user.UserData;
+
+/**
+ * Command to value every portfolio of a user at once, on a date or on every day of a date
+ * range, without selecting each portfolio as the current one. The portfolios are valued
+ * in parallel on the common fork/join pool. Stocks come from the shared stock repository, which
+ * loads each ticker once even when several portfolios ask for it at the same time, so
+ * every portfolio holding a stock reads the same price data.
+ *
+ * <p>Like a performance graph, a portfolio is valued on a day at the closing prices of
+ * that day, or of the most recent day before it with price data. A day on which a
+ * portfolio has no value, because a stock it holds has no price data yet or its ledger
+ * cannot be replayed up to that day, is reported as missing for that portfolio, and the
+ * totals of the day add up the portfolios that have a value. A portfolio that cannot be
+ * valued at all is missing on every day, without failing the other portfolios.
+ */
+public class AggregateValueCommand implements Command<AggregateValueCommand.Report> {
+
+  private final String from;
+  private final String to;
+
+  /**
+   * Constructs a command that values every portfolio on a date.
+   *
+   * @param date date of the valuation
+   */
+  public AggregateValueCommand(String date) {
+    this(date, date);
+  }
+
+  /**
+   * Constructs a command that values every portfolio on every day between two dates,
+   * inclusive.
+   *
+   * @param from first date of the range
+   * @param to last date of the range
+   */
+  public AggregateValueCommand(String from, String to) {
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Executes the command onto a {@link UserData} object. The days on which a portfolio
+   * cannot be valued are reported as missing for that portfolio, with their errors.
+   *
+   * @param user {@link UserData} object
+   * @return the values of the portfolios and their totals
+   * @throws IllegalArgumentException if a date is invalid, the range is empty or it ends
+   *                                  in the future
+   */
+  @Override
+  public Report execute(UserData user) throws IllegalArgumentException {
+    LocalDate start;
+    LocalDate end;
+    try {
+      start = LocalDate.parse(from);
+      end = LocalDate.parse(to);
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("Start date must be before end date.");
+    }
+    if (end.isAfter(LocalDate.now())) {
+      throw new IllegalArgumentException("The program cannot predict future stock prices.");
+    }
+
+    // every portfolio is valued on its ledger as it is now, even if trades go on
+    List<Portfolio> portfolios = new ArrayList<>();
+    for (Portfolio portfolio : user.listPortfolios()) {
+      portfolios.add(portfolio.snapshot());
+    }
+    Valued[] results = new Valued[portfolios.size()];
+    ForkJoinPool.commonPool().invoke(new ValueAction(portfolios, 0, portfolios.size(),
+            results));
+    return new Report(start, end, portfolios, results);
+  }
+
+  @Override
+  public String getName() {
+    return "aggregate portfolio value";
+  }
+
+  private static double round(double value) {
+    String str = String.format("%.2f", value);
+    return Double.valueOf(str);
+  }
+
+  // the values of one portfolio on every day, NaN on the days given an error, and its
+  // holdings on the last day
+  private static final class Valued {
+    private final double[] values;
+    private final String[] errors;
+    private final Map<String, Double> exposure;
+
+    private Valued(double[] values, String[] errors, Map<String, Double> exposure) {
+      this.values = values;
+      this.errors = errors;
+      this.exposure = exposure;
+    }
+  }
+
+  private final class ValueAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Portfolio> portfolios;
+    private final int low;
+    private final int high;
+    private final Valued[] results;
+
+    private ValueAction(List<Portfolio> portfolios, int low, int high, Valued[] results) {
+      this.portfolios = portfolios;
+      this.low = low;
+      this.high = high;
+      this.results = results;
+    }
+
+    @Override
+    protected void compute() {
+      if (high - low > 1) {
+        int mid = (low + high) >>> 1;
+        invokeAll(new ValueAction(portfolios, low, mid, results),
+                new ValueAction(portfolios, mid, high, results));
+        return;
+      }
+      if (high == low) {
+        return;
+      }
+      try {
+        results[low] = value(portfolios.get(low));
+      } catch (RuntimeException e) {
+        // the portfolio cannot be valued at all, for example because a stock it holds
+        // fails to load, so it is missing on every day rather than failing the report
+        int days = (int) (LocalDate.parse(to).toEpochDay()
+                - LocalDate.parse(from).toEpochDay() + 1);
+        double[] values = new double[days];
+        String[] errors = new String[days];
+        Arrays.fill(values, Double.NaN);
+        Arrays.fill(errors, message(e));
+        results[low] = new Valued(values, errors, new LinkedHashMap<>());
+      }
+    }
+
+    private Valued value(Portfolio portfolio) {
+      PortfolioValuation valuation = portfolio.getValues(from, to);
+      LocalDate first = valuation.getFrom();
+      double[] values = new double[(int) (valuation.getTo().toEpochDay()
+              - first.toEpochDay() + 1)];
+      String[] errors = new String[values.length];
+      for (int day = 0; day < values.length; day++) {
+        try {
+          values[day] = valuation.getValue(first.plusDays(day));
+        } catch (RuntimeException e) {
+          values[day] = Double.NaN;
+          errors[day] = message(e);
+        }
+      }
+      // the stocks held on the last day that have a price on it
+      Map<String, Double> exposure = new LinkedHashMap<>();
+      try {
+        List<Stock> stocks = portfolio.getStocks(to);
+        List<Double> shares = portfolio.getShares(to);
+        for (int i = 0; i < stocks.size(); i++) {
+          Stock stock = stocks.get(i);
+          try {
+            exposure.merge(stock.getTicker(), shares.get(i) * stock.getClosingPrice(to),
+                    Double::sum);
+          } catch (RuntimeException e) {
+            // no price data on or before the last day
+          }
+        }
+      } catch (RuntimeException e) {
+        // the positions on the last day cannot be computed, which is reported as missing
+      }
+      return new Valued(values, errors, exposure);
+    }
+  }
+
+  // the message of an error, which is never null so that the day reads as missing
+  private static String message(RuntimeException e) {
+    return e.getMessage() != null ? e.getMessage() : e.toString();
+  }
+
+  /**
+   * Result of an {@link AggregateValueCommand}: the value of each portfolio on every day
+   * of the range, their grand total, and how much of that total is in each stock on the
+   * last day. Values are rounded to the cent, and are NaN on the days a portfolio is
+   * missing.
+   */
+  public static final class Report {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Map<String, double[]> values; // by portfolio name
+    private final Map<String, String[]> errors; // by portfolio name, null on valued days
+    private final double[] grandTotals;
+    private final Map<String, Double> exposure; // by ticker, on the last day
+
+    private Report(LocalDate from, LocalDate to, List<Portfolio> portfolios,
+                   Valued[] results) {
+      this.from = from;
+      this.to = to;
+      Map<String, double[]> values = new LinkedHashMap<>();
+      Map<String, String[]> errors = new LinkedHashMap<>();
+      Map<String, Double> exposure = new LinkedHashMap<>();
+      double[] grandTotals = new double[(int) (to.toEpochDay() - from.toEpochDay() + 1)];
+      // summed in the order of the portfolios, whatever order they were valued in
+      for (int i = 0; i < results.length; i++) {
+        String name = portfolios.get(i).getName();
+        String key = name;
+        for (int n = 2; values.containsKey(key); n++) {
+          key = name + " (" + n + ")";
+        }
+        values.put(key, results[i].values);
+        errors.put(key, results[i].errors);
+        for (int day = 0; day < grandTotals.length; day++) {
+          if (results[i].errors[day] == null) {
+            grandTotals[day] += results[i].values[day];
+          }
+        }
+        for (Map.Entry<String, Double> entry : results[i].exposure.entrySet()) {
+          exposure.merge(entry.getKey(), entry.getValue(), Double::sum);
+        }
+      }
+      exposure.replaceAll((ticker, value) -> round(value));
+      this.values = values;
+      this.errors = errors;
+      this.grandTotals = grandTotals;
+      this.exposure = Collections.unmodifiableMap(exposure);
+    }
+
+    /**
+     * Gets the first date of the range.
+     * @return the first date
+     */
+    public LocalDate getFrom() {
+      return from;
+    }
+
+    /**
+     * Gets the last date of the range.
+     * @return the last date
+     */
+    public LocalDate getTo() {
+      return to;
+    }
+
+    /**
+     * Gets the value of each portfolio on the last date, which is NaN if the portfolio is
+     * missing on it. Portfolios sharing a name are told apart by a number after the name.
+     * @return the values by portfolio name, in the order of the portfolios
+     */
+    public Map<String, Double> getTotals() {
+      return getTotals(to.toString());
+    }
+
+    /**
+     * Gets the value of each portfolio on a date of the range, which is NaN if the
+     * portfolio is missing on it.
+     * @param date date within the range
+     * @return the values by portfolio name, in the order of the portfolios
+     * @throws IllegalArgumentException if the date is outside of the range
+     */
+    public Map<String, Double> getTotals(String date) throws IllegalArgumentException {
+      int day = dayOf(date);
+      Map<String, Double> totals = new LinkedHashMap<>();
+      for (Map.Entry<String, double[]> entry : values.entrySet()) {
+        totals.put(entry.getKey(), round(entry.getValue()[day]));
+      }
+      return totals;
+    }
+
+    /**
+     * Gets the sum of the values of the portfolios that are not missing on the last date.
+     * @return the grand total
+     */
+    public double getGrandTotal() {
+      return getGrandTotal(to.toString());
+    }
+
+    /**
+     * Gets the sum of the values of the portfolios that are not missing on a date of the
+     * range.
+     * @param date date within the range
+     * @return the grand total
+     * @throws IllegalArgumentException if the date is outside of the range
+     */
+    public double getGrandTotal(String date) throws IllegalArgumentException {
+      return round(grandTotals[dayOf(date)]);
+    }
+
+    /**
+     * Gets the value held in each stock across the portfolios on the last date.
+     * @return the values by ticker, in the order the stocks were first seen
+     */
+    public Map<String, Double> getExposure() {
+      return exposure;
+    }
+
+    /**
+     * Gets why each portfolio that is missing on the last date could not be valued.
+     * @return the error messages by portfolio name
+     */
+    public Map<String, String> getErrors() {
+      return getErrors(to.toString());
+    }
+
+    /**
+     * Gets why each portfolio that is missing on a date of the range could not be valued.
+     * @param date date within the range
+     * @return the error messages by portfolio name
+     * @throws IllegalArgumentException if the date is outside of the range
+     */
+    public Map<String, String> getErrors(String date) throws IllegalArgumentException {
+      int day = dayOf(date);
+      Map<String, String> res = new LinkedHashMap<>();
+      for (Map.Entry<String, String[]> entry : errors.entrySet()) {
+        if (entry.getValue()[day] != null) {
+          res.put(entry.getKey(), entry.getValue()[day]);
+        }
+      }
+      return res;
+    }
+
+    /**
+     * Gets the days of the range on which each portfolio could not be valued, for the
+     * portfolios missing on at least one day.
+     * @return the missing days by portfolio name, in order
+     */
+    public Map<String, List<LocalDate>> getMissingDays() {
+      Map<String, List<LocalDate>> res = new LinkedHashMap<>();
+      for (Map.Entry<String, String[]> entry : errors.entrySet()) {
+        List<LocalDate> days = new ArrayList<>();
+        for (int day = 0; day < entry.getValue().length; day++) {
+          if (entry.getValue()[day] != null) {
+            days.add(from.plusDays(day));
+          }
+        }
+        if (!days.isEmpty()) {
+          res.put(entry.getKey(), days);
+        }
+      }
+      return res;
+    }
+
+    private int dayOf(String date) {
+      LocalDate day;
+      try {
+        day = LocalDate.parse(date);
+      } catch (Exception e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+      if (day.isBefore(from) || day.isAfter(to)) {
+        throw new IllegalArgumentException("The date is outside of the valuation range.");
+      }
+      return (int) (day.toEpochDay() - from.toEpochDay());
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder res = new StringBuilder();
+      Map<String, String> missing = getErrors();
+      for (Map.Entry<String, Double> entry : getTotals().entrySet()) {
+        if (missing.containsKey(entry.getKey())) {
+          res.append(String.format("%s: %s%n", entry.getKey(), missing.get(entry.getKey())));
+        } else {
+          res.append(String.format("%s: $%.2f%n", entry.getKey(), entry.getValue()));
+        }
+      }
+      for (Map.Entry<String, Double> entry : exposure.entrySet()) {
+        res.append(String.format("%s: $%.2f%n", entry.getKey(), entry.getValue()));
+      }
+      res.append(String.format("Total value on %s: $%.2f", to, getGrandTotal()));
+      return res.toString();
+    }
+  }
+}
@@ -5,18 +5,32 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import model.portfolio.BasicPortfolio;
+import model.portfolio.BinaryLedgerFile;
+import model.portfolio.Order;
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioJournal;
+import model.stock.StockRepository;
+import model.user.Transaction;
 import model.user.UserData;
 
 /**
  * Command to load a properly formatted CSV file as a portfolio that the user
- * can manipulate in the program.
+ * can manipulate in the program. If there is no CSV file with the name, a binary
+ * ledger file with the name is loaded instead.
  */
 public class LoadPortfolioCommand implements Command<String> {
   private final String dirPath = "portfolios/";
   private final String ext = ".csv";
+  private final String binaryExt = ".ledger";
   private final String filename;
   private final String path;
 
@@ -26,7 +40,11 @@ public class LoadPortfolioCommand implements Command<String> {
    */
   public LoadPortfolioCommand(String filename) {
     this.filename = filename;
-    this.path = dirPath + filename + ext;
+    if (Files.exists(Path.of(dirPath + filename + ext))) {
+      this.path = dirPath + filename + ext;
+    } else {
+      this.path = dirPath + filename + binaryExt;
+    }
 
     if (!Files.exists(Path.of(path))) {
       throw new IllegalArgumentException("This file does not exist in the portfolios folder.");
@@ -41,10 +59,12 @@ public class LoadPortfolioCommand implements Command<String> {
    */
   @Override
   public String execute(UserData user) {
+    if (path.endsWith(binaryExt)) {
+      return loadBinary(user);
+    }
     String msg;
-    Portfolio pf = new BasicPortfolio(filename);
-    try {
-      BufferedReader br = new BufferedReader(new FileReader(path));
+    BasicPortfolio pf = new BasicPortfolio(filename);
+    try (BufferedReader br = new BufferedReader(new FileReader(path))) {
 
       String line = br.readLine();
       String[] headers = line.split(",");
@@ -57,23 +77,46 @@ public class LoadPortfolioCommand implements Command<String> {
                 "Reformat csv file or add a header. Date,Type,Ticker,Amount");
       }
 
+      // every row is checked on its own as it is read, then the whole ledger is checked
+      // in date order and added to the portfolio at once; errors name the row they are
+      // found in
+      Rows rows = new Rows();
       while ((line = br.readLine()) != null) {
         String[] parts = line.split(",");
-        String date = parts[dateIndex].trim();
+        int row = rows.size + 1;
+        if (parts.length <= Math.max(Math.max(dateIndex, typeIndex),
+                Math.max(tickerIndex, amountIndex))) {
+          throw new IllegalArgumentException("Transaction " + row + ": Missing a column.");
+        }
         boolean type = parts[typeIndex].trim().equalsIgnoreCase("buy");
-        String ticker = parts[tickerIndex].trim();
-        double amount = Double.parseDouble(parts[amountIndex].trim());
+        double amount;
+        try {
+          amount = Double.parseDouble(parts[amountIndex].trim());
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Transaction " + row + ": This is not a valid "
+                  + "amount.");
+        }
         if (type && amount % 1 != 0) {
-          throw new IllegalArgumentException("Cannot buy fractional shares.");
+          throw new IllegalArgumentException("Transaction " + row
+                  + ": Cannot buy fractional shares.");
         }
+        rows.add(type, parts[tickerIndex].trim(), amount, parts[dateIndex].trim());
+      }
 
-        if (type) {
-          pf.buyStock(ticker, amount, date);
-        } else {
-          pf.sellStock(ticker, amount, date);
-        }
+      // the trades made after the file was written, if the program stopped before the
+      // portfolio was saved again
+      PortfolioJournal journal = new PortfolioJournal(Path.of(dirPath), filename);
+      for (Order order : journal.recover(rows.size)) {
+        rows.add(order.getType(), order.getTicker(), order.getShares(), order.getDate());
       }
 
+      // load the price data of every ticker in the portfolio at once, instead of one
+      // ticker at a time as they are looked up
+      StockRepository.getInstance().prefetch(rows.tickers);
+      List<Transaction> ledger = rows.toTransactions();
+      pf.loadTransactions(ledger);
+      pf.setJournal(journal);
+
       user.addPortfolio(pf);
       user.setCurrentPortfolio(pf);
       msg = "Successfully loaded the portfolio from " + path;
@@ -85,6 +128,90 @@ public class LoadPortfolioCommand implements Command<String> {
     return msg;
   }
 
+  // the rows of a portfolio file as columns, with each distinct ticker and date stored
+  // once, so that a file with millions of rows takes little memory until it is loaded
+  private static final class Rows {
+    private final List<String> tickers = new ArrayList<>();
+    private final List<Integer> firstRows = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<String, LocalDate> dates = new HashMap<>();
+    private boolean[] buys = new boolean[64];
+    private int[] tickerSlots = new int[64];
+    private double[] amounts = new double[64];
+    private LocalDate[] days = new LocalDate[64];
+    private int size;
+
+    private void add(boolean buy, String ticker, double amount, String date) {
+      LocalDate day = dates.get(date);
+      if (day == null) {
+        try {
+          day = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+          throw new IllegalArgumentException("Transaction " + (size + 1)
+                  + ": This is not a valid date.");
+        }
+        dates.put(date, day);
+      }
+      Integer slot = slots.get(ticker);
+      if (slot == null) {
+        slot = tickers.size();
+        slots.put(ticker, slot);
+        tickers.add(ticker);
+        firstRows.add(size + 1);
+      }
+      if (size == buys.length) {
+        buys = Arrays.copyOf(buys, size * 2);
+        tickerSlots = Arrays.copyOf(tickerSlots, size * 2);
+        amounts = Arrays.copyOf(amounts, size * 2);
+        days = Arrays.copyOf(days, size * 2);
+      }
+      buys[size] = buy;
+      tickerSlots[size] = slot;
+      amounts[size] = amount;
+      days[size] = day;
+      size++;
+    }
+
+    // looks up each ticker once, naming the first row of a ticker that does not exist
+    private List<Transaction> toTransactions() {
+      int[] ids = new int[tickers.size()];
+      for (int i = 0; i < ids.length; i++) {
+        try {
+          ids[i] = Transaction.findTicker(tickers.get(i));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Transaction " + firstRows.get(i) + ": "
+                  + e.getMessage());
+        }
+      }
+      List<Transaction> ledger = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        try {
+          ledger.add(new Transaction(buys[i], ids[tickerSlots[i]], amounts[i], days[i], i));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Transaction " + (i + 1) + ": " + e.getMessage());
+        }
+      }
+      return ledger;
+    }
+  }
+
+  // the binary ledger is added to the portfolio as a whole, without replaying each trade
+  private String loadBinary(UserData user) {
+    BasicPortfolio pf;
+    try {
+      pf = BinaryLedgerFile.read(Path.of(path), filename);
+      // the first trade writes the portfolio file that the journal continues
+      pf.setJournal(new PortfolioJournal(Path.of(dirPath), filename));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error reading ledger file: " + e.getMessage());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Error creating portfolio: " + e.getMessage());
+    }
+    user.addPortfolio(pf);
+    user.setCurrentPortfolio(pf);
+    return "Successfully loaded the portfolio from " + path;
+  }
+
   private int findIndex(String[] strList, String str) {
     for (int i = 0; i < strList.length; i++) {
       if (strList[i].equalsIgnoreCase(str)) {
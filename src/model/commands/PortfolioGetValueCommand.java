@@ -34,11 +34,13 @@ public class PortfolioGetValueCommand implements Command<Double> {
    */
   @Override
   public Double execute(UserData user) {
-    Portfolio portfolio = user.getCurrentPortfolio();
+    Portfolio current = user.getCurrentPortfolio();
 
-    if (portfolio == null) {
+    if (current == null) {
       throw new IllegalArgumentException("No current portfolio set.");
     }
+    // the stocks and their shares come from the same ledger even if trades go on
+    Portfolio portfolio = current.snapshot();
 
     double value = 0.0;
 
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioValuation;
 import model.user.UserData;
 
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -124,37 +125,31 @@ public class PortfolioPerformanceCommand implements Command<String> {
   }
 
   private double getMaxValue() {
-    Command<Double> getValue;
     max = 0.0;
-    double value = 0.0;
     LocalDate date = startDate;
     if (timescale.equalsIgnoreCase("MONTHS")) {
-      value = getValue(date);
-      addToArrays(date, value);
+      times.add(date);
       if (date.isEqual(date.with(lastDayOfMonth()))) {
         date = date.plusMonths(1);
       } else {
         date = date.with(lastDayOfMonth());
       }
     } else if (timescale.equalsIgnoreCase("3-MONTHS")) {
-      value = getValue(date);
-      addToArrays(date, value);
+      times.add(date);
       if (date.isEqual(date.with(lastDayOfMonth()))) {
         date = date.plusMonths(3);
       } else {
         date = date.with(lastDayOfMonth());
       }
     } else if (timescale.equalsIgnoreCase("YEARS")) {
-      value = getValue(date);
-      addToArrays(date, value);
+      times.add(date);
       if (date.isEqual(date.with(lastDayOfYear()))) {
         date = date.plusYears(1);
       } else {
         date = date.with(lastDayOfYear());
       }
     } else if (timescale.equalsIgnoreCase("3-YEARS")) {
-      value = getValue(date);
-      addToArrays(date, value);
+      times.add(date);
       if (date.isEqual(date.with(lastDayOfYear()))) {
         date = date.plusYears(3);
       } else {
@@ -163,38 +158,37 @@ public class PortfolioPerformanceCommand implements Command<String> {
     }
 
     while (date.isBefore(endDate)) {
-      value = getValue(date);
       switch (timescale) {
         case "DAYS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusDays(1);
           break;
         case "WEEKS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusWeeks(1);
           break;
         case "3-WEEKS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusWeeks(3);
           break;
         case "MONTHS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusMonths(1);
           break;
         case "3-MONTHS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusMonths(3);
           break;
         case "YEARS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusYears(1);
           break;
         case "3-YEARS":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusYears(3);
           break;
         case "DECADES":
-          addToArrays(date, value);
+          times.add(date);
           date = date.plusYears(10);
           break;
         default:
@@ -202,24 +196,27 @@ public class PortfolioPerformanceCommand implements Command<String> {
       }
     }
     if (date.isAfter(endDate)) {
-      value = getValue(endDate);
-      addToArrays(endDate, value);
+      times.add(endDate);
     }
-    return max;
-  }
-
-  private void addToArrays(LocalDate date, double value) {
-    times.add(date);
-    values.add(value);
-  }
 
-  private double getValue(LocalDate date) {
-    Command<Double> getValue = new PortfolioGetValueCommand(date.toString());
-    double value = user.execute(getValue);
-    if (value > max) {
-      max = value;
+    if (times.isEmpty()) {
+      return max;
     }
-    return value;
+    // every sample is read from the values of the whole range, computed at once
+    LocalDate last = times.get(times.size() - 1);
+    if (LocalDate.now().isBefore(last)) {
+      throw new IllegalArgumentException("The program cannot predict future stock prices.");
+    }
+    PortfolioValuation valuation = user.getCurrentPortfolio().getValues(startDate.toString(),
+            last.toString());
+    for (LocalDate time : times) {
+      double value = Double.valueOf(String.format("%.2f", valuation.getValue(time)));
+      values.add(value);
+      if (value > max) {
+        max = value;
+      }
+    }
+    return max;
   }
 
   private void draw() {
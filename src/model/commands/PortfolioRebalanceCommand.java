@@ -1,7 +1,9 @@
 package model.commands;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import model.portfolio.Order;
 import model.portfolio.Portfolio;
 import model.stock.Stock;
 import model.user.UserData;
@@ -60,6 +62,7 @@ public class PortfolioRebalanceCommand implements Command<String> {
     }
     List<Double> shares = portfolio.getShares(date);
 
+    List<Order> orders = new ArrayList<>();
     for (int i = 0; i < stocks.size(); i++) {
       Stock currentStock = stocks.get(i);
       double currentShares = shares.get(i);
@@ -72,11 +75,12 @@ public class PortfolioRebalanceCommand implements Command<String> {
       double diff = targetShares - currentShares;
       if (diff < 0 ) {
         diff *= -1;
-        portfolio.sellStock(ticker, diff, date);
+        orders.add(new Order(false, ticker, diff, date));
       } else if (diff > 0) {
-        portfolio.buyStock(ticker, diff, date);
+        orders.add(new Order(true, ticker, diff, date));
       }
     }
+    portfolio.submitOrders(orders);
     return "Portfolio re-balanced successfully.";
   }
 
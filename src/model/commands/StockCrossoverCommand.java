@@ -1,5 +1,6 @@
 package model.commands;
 
+import java.nio.IntBuffer;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -48,15 +49,15 @@ public class StockCrossoverCommand implements Command<List<String>> {
 
     checkValidDates(start, end, stock);
 
-    List<String> dates = stock.getAllDates();
     List<String> temp = new ArrayList<>();
 
     int startI = stock.getIndex(start);
     int endI = stock.getIndex(end);
+    IntBuffer dates = stock.getDates(endI, startI + 1);
 
     for (int i = startI; i > endI - 1; i--) {
-      String curr = dates.get(i);
-      if (isCrossover(curr, user)) {
+      String curr = LocalDate.ofEpochDay(dates.get(i - endI)).toString();
+      if (isCrossover(curr, stock)) {
         temp.add(curr);
       }
     }
@@ -72,19 +73,15 @@ public class StockCrossoverCommand implements Command<List<String>> {
     return "crossover";
   }
 
-  private boolean isCrossover(String date, UserData user) {
-    Stock stock = user.getCurrentStock();
-
-    Command<Double> movingAvg = new StockMovingAverageCommand(date, x);
-    return stock.getClosingPrice(date) > user.execute(movingAvg);
+  // uses the stock the command started with, even if its data is reloaded meanwhile
+  private boolean isCrossover(String date, Stock stock) {
+    StockMovingAverageCommand movingAvg = new StockMovingAverageCommand(date, x);
+    return stock.getClosingPrice(date) > movingAvg.execute(stock);
   }
 
   private void checkValidDates(String start, String end, Stock stock) {
-    List<String> dates = stock.getAllDates();
-    String oldest = dates.get(dates.size() - 1);
-    String newest = dates.get(0);
-    LocalDate newestDate = LocalDate.parse(newest);
-    LocalDate oldestDate = LocalDate.parse(oldest);
+    LocalDate newestDate = LocalDate.ofEpochDay(stock.getDates(0, 1).get(0));
+    LocalDate oldestDate = oldestDate(stock);
     LocalDate startDate = LocalDate.parse(start);
     LocalDate endDate = LocalDate.parse(end);
 
@@ -101,37 +98,16 @@ public class StockCrossoverCommand implements Command<List<String>> {
     }
 
     if (startDate.isBefore(oldestDate)) {
-      advanceStart(stock);
+      this.start = oldestDate.toString();
     }
 
     if (newestDate.isBefore(endDate)) {
-      decreaseEnd(stock);
-    }
-  }
-
-  private void advanceStart(Stock stock) {
-    List<String> dates = stock.getAllDates();
-    String oldest = dates.get(dates.size() - 1);
-    LocalDate startDate = LocalDate.parse(start);
-    LocalDate oldestDate = LocalDate.parse(oldest);
-
-    while (startDate.isBefore(oldestDate)) {
-      startDate = startDate.plusDays(1);
+      this.end = newestDate.toString();
     }
-
-    this.start = startDate.toString();
   }
 
-  private void decreaseEnd(Stock stock) {
-    List<String> dates = stock.getAllDates();
-    String newest = dates.get(0);
-    LocalDate newestDate = LocalDate.parse(newest);
-    LocalDate endDate = LocalDate.parse(end);
-
-    while (newestDate.isBefore(endDate)) {
-      endDate = endDate.minusDays(1);
-    }
-
-    this.end = endDate.toString();
+  private LocalDate oldestDate(Stock stock) {
+    int size = stock.getSize();
+    return LocalDate.ofEpochDay(stock.getDates(size - 1, size).get(0));
   }
 }
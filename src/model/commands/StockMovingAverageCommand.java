@@ -1,6 +1,6 @@
 package model.commands;
 
-import java.util.List;
+import java.nio.DoubleBuffer;
 
 import model.stock.Stock;
 import model.user.UserData;
@@ -40,19 +40,29 @@ public class StockMovingAverageCommand implements Command<Double> {
     if (stock == null) {
       throw new IllegalArgumentException("No current stock set.");
     }
+    return execute(stock);
+  }
 
+  /**
+   * Executes the command onto a given stock, so that commands built on the moving
+   * average read the same snapshot of the stock's data throughout.
+   *
+   * @param stock the stock to average the closing prices of
+   * @return the moving average
+   */
+  Double execute(Stock stock) {
     int start = stock.getIndex(date);
     if (start == -1) {
       throw new IllegalArgumentException("No data found on this date.");
     }
 
+    // the last x prices end at the start of the list when there are fewer than x of them
+    DoubleBuffer prices = stock.getClosingPrices(start,
+            (int) Math.min((long) start + x, stock.getSize()));
     double total = 0;
-    int count = 0;
-    List<Double> prices = stock.getAllClosingPrices();
-    for (int i = start; i < prices.size() && x > 0; i++) {
-      total += prices.get(i);
-      count++;
-      x--;
+    int count = prices.remaining();
+    while (prices.hasRemaining()) {
+      total += prices.get();
     }
     double movingAvg = total / count;
     String str = String.format("%.2f", movingAvg);
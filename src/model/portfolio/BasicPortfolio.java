@@ -1,17 +1,20 @@
 package model.portfolio;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.math.BigDecimal;
 
-import model.stock.BasicStock;
 import model.stock.Stock;
+import model.stock.StockRepository;
+import model.stock.TickerSymbols;
 import model.user.Transaction;
 
 /**
@@ -19,13 +22,22 @@ import model.user.Transaction;
  * users can have a portfolio that they name. They can also see the value of the
  * portfolio on certain dates, buy stocks, sell stocks, rebalance stocks, and
  * see a performance graph.
+ *
+ * <p>The ledger and positions of the portfolio are held in an immutable snapshot.
+ * Each trade publishes a new snapshot, and trades are made one at a time, while reads
+ * take no lock and work on the snapshot that was current when they started, so any
+ * number of threads can read a portfolio while another one trades.
  */
 public class BasicPortfolio implements Portfolio {
 
+  private static final int CHECKPOINT_INTERVAL = Ledger.CHECKPOINT_INTERVAL;
+
   private final String name;
-  private List<Stock> stocks;
-  private List<Double> shares;
-  private final List<Transaction> transactions;
+  // transactions sorted by date, then by the order they were made on that date, and
+  // the positions they lead to; replaced as a whole by every trade
+  private volatile Ledger ledger;
+  // trades are appended to the journal as they are made, if the portfolio has one
+  private PortfolioJournal journal;
 
   /**
    * Constructs a new portfolio object.
@@ -34,9 +46,7 @@ public class BasicPortfolio implements Portfolio {
    */
   public BasicPortfolio(String name) {
     this.name = name;
-    this.stocks = new ArrayList<>();
-    this.shares = new ArrayList<>();
-    this.transactions = new ArrayList<>();
+    this.ledger = Ledger.EMPTY;
   }
 
   /**
@@ -56,8 +66,12 @@ public class BasicPortfolio implements Portfolio {
    */
   @Override
   public List<Stock> getStocks(String date) {
-    processTransactions(date);
-    return new ArrayList<>(stocks);
+    Map<Integer, Double> positions = positionsOn(date);
+    List<Stock> res = new ArrayList<>(positions.size());
+    for (int id : positions.keySet()) {
+      res.add(getStock(id));
+    }
+    return res;
   }
 
   /**
@@ -67,8 +81,7 @@ public class BasicPortfolio implements Portfolio {
    */
   @Override
   public List<Double> getShares(String date) {
-    processTransactions(date);
-    return new ArrayList<>(shares);
+    return new ArrayList<>(positionsOn(date).values());
   }
 
   /**
@@ -78,12 +91,11 @@ public class BasicPortfolio implements Portfolio {
    */
   @Override
   public List<String> getComposition(String date) {
-    processTransactions(date);
     List<String> res = new ArrayList<>();
-    for (int i = 0; i < stocks.size(); i++) {
-      String decimalString = formatDouble(shares.get(i));
-      res.add(String.format("%s: %s share(s)", stocks.get(i).getTicker(),
-              decimalString));
+    for (Map.Entry<Integer, Double> position : positionsOn(date).entrySet()) {
+      String decimalString = formatDouble(position.getValue());
+      res.add(String.format("%s: %s share(s)",
+              TickerSymbols.getInstance().getSymbol(position.getKey()), decimalString));
     }
     return res;
   }
@@ -97,33 +109,41 @@ public class BasicPortfolio implements Portfolio {
    */
   @Override
   public List<String> getDistribution(String date) {
-    checkDate(date);
     List<String> res = new ArrayList<>();
-    for (int i = 0; i < stocks.size(); i++) {
+    for (Map.Entry<Integer, Double> position : positionsOn(date).entrySet()) {
       // error checking in getClosingPrice
-      double price = shares.get(i) * stocks.get(i).getClosingPrice(date);
-      String ticker = stocks.get(i).getTicker();
+      Stock stock = getStock(position.getKey());
+      double price = position.getValue() * stock.getClosingPrice(date);
+      String ticker = stock.getTicker();
       String str = String.format("%s: $%.2f", ticker, price);
       res.add(str);
     }
     return res;
   }
 
+  /**
+   * Gets a copy of the portfolio as it is now, which shares the current snapshot of its
+   * ledger; trades made on either one afterwards do not change the other.
+   *
+   * @return the copy of the portfolio
+   */
+  @Override
+  public Portfolio snapshot() {
+    BasicPortfolio copy = new BasicPortfolio(name);
+    copy.ledger = ledger;
+    return copy;
+  }
+
   /**
    * Adds a stock to the portfolio.
    *
    * @param ticker of the stock
    */
   @Override
-  public void buyStock(String ticker, double amount, String date) {
+  public synchronized void buyStock(String ticker, double amount, String date) {
     checkDate(date);
     checkFuture(date);
     addToTransaction(true, ticker, amount, date);
-    try {
-      processTransactions(date);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException(e.getMessage());
-    }
   }
 
   /**
@@ -132,18 +152,68 @@ public class BasicPortfolio implements Portfolio {
    * @param ticker of the stock
    */
   @Override
-  public void sellStock(String ticker, double amount, String date) throws IllegalArgumentException {
+  public synchronized void sellStock(String ticker, double amount, String date)
+          throws IllegalArgumentException {
     checkDate(date);
     checkFuture(date);
     if (isEmpty(date)) {
       throw new IllegalArgumentException("There are no stocks in the portfolio.");
     }
     addToTransaction(false, ticker, amount, date);
-    try {
-      processTransactions(date);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException(e.getMessage());
+  }
+
+  /**
+   * Gets the value of the portfolio on every day between two dates, inclusive.
+   *
+   * @param from first date of the range
+   * @param to last date of the range
+   * @return the values of the portfolio
+   */
+  @Override
+  public PortfolioValuation getValues(String from, String to) throws IllegalArgumentException {
+    checkDate(from);
+    checkDate(to);
+    LocalDate start = LocalDate.parse(from);
+    LocalDate end = LocalDate.parse(to);
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("Start date must be before end date.");
+    }
+    // the pass starts from the latest checkpoint on or before the first date
+    Ledger current = ledger;
+    int k = current.checkpointBefore(current.countUntil(start));
+    return new PortfolioValuation(start, end, current.checkpoint(k),
+            current.subList(k * CHECKPOINT_INTERVAL, current.countUntil(end)));
+  }
+
+  /**
+   * Buys and sells stocks with several orders at once, in a single update of the ledger.
+   *
+   * @param orders the orders to make
+   * @throws IllegalArgumentException if any of the orders is invalid
+   */
+  @Override
+  public synchronized void submitOrders(List<Order> orders) throws IllegalArgumentException {
+    if (orders.isEmpty()) {
+      return;
     }
+    List<Transaction> batch = new ArrayList<>(orders.size());
+    for (Order order : orders) {
+      checkDate(order.getDate());
+      checkFuture(order.getDate());
+      try {
+        batch.add(new Transaction(order.getType(), order.getTicker(), order.getShares(),
+                order.getDate(), batch.size()));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid transaction. " + e.getMessage());
+      }
+    }
+    // the sort is stable, so orders on the same date keep their order
+    batch.sort(Comparator.comparing(Transaction::getDate));
+
+    // each order goes after every transaction on or before its date, and nothing is
+    // changed unless every order can be applied there
+    ledger = ledger.addAll(batch);
+    logTrades(batch);
   }
 
   private void checkFuture(String date) {
@@ -167,16 +237,29 @@ public class BasicPortfolio implements Portfolio {
    */
   @Override
   public boolean isEmpty(String date) {
-    return getStocks(date).isEmpty();
+    return positionsOn(date).isEmpty();
   }
 
   /**
-   * Saves the current portfolio to the designated directory.
+   * Appends every trade made from now on to a journal, so that the trades are on disk
+   * without saving the whole portfolio again.
+   *
+   * @param journal the journal of the portfolio, holding the trades made after its file
+   *                was written; the journal of a portfolio that has no file yet writes it
+   *                on the first trade, unless another portfolio has a file with its name
+   */
+  public synchronized void setJournal(PortfolioJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Saves the current portfolio to the designated directory. From then on, every trade
+   * is also appended to the journal of the portfolio as soon as it is made.
    *
    * @return a string for success of portfolio creation
    */
   @Override
-  public String save() {
+  public synchronized String save() {
     String dirPath = "portfolios/";
     String ext = ".csv";
     String path = dirPath + getName() + ext;
@@ -188,23 +271,11 @@ public class BasicPortfolio implements Portfolio {
       msg = "Portfolio [" + getName() + "] successfully saved to " + path;
     }
 
-    try (FileWriter writer = new FileWriter(path)) {
-      // write the header
-      writer.write("Date,Type,Ticker,Amount\n");
-
-      // write the contents
-      for (Transaction transaction : transactions) {
-        String date = transaction.getDate().toString();
-        String type;
-        if (transaction.getType()) {
-          type = "BUY";
-        } else {
-          type = "SELL";
-        }
-        String ticker = transaction.getTicker();
-        String amount = formatDouble(transaction.getShares());
-        writer.write(String.format("%s,%s,%s,%s\n", date, type, ticker, amount));
-      }
+    if (journal == null) {
+      journal = new PortfolioJournal(getName());
+    }
+    try {
+      journal.compact(ledger.transactions());
     } catch (IOException e) {
       System.err.println("Error saving the portfolio: " + e.getMessage());
     }
@@ -212,85 +283,166 @@ public class BasicPortfolio implements Portfolio {
     return msg;
   }
 
-  // loops through and gets the index of the stock with the same ticker,
-  // if it doesn't exist, return -1
-  private int getIndex(String ticker) {
-    for (int i = 0; i < stocks.size(); i++) {
-      if (stocks.get(i).getTicker().equalsIgnoreCase(ticker)) {
-        return i;
-      }
+  /**
+   * Closes the journal of the portfolio, if it has one, after forcing its trades to the
+   * disk.
+   */
+  @Override
+  public synchronized void close() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.err.println("Error saving the portfolio: " + e.getMessage());
     }
-    return -1;
   }
 
-  private void processTransactions(String date) {
-    stocks = new ArrayList<>();
-    shares = new ArrayList<>();
-    checkDate(date);
-    LocalDate curr = LocalDate.parse(date);
-    Collections.sort(transactions);
-    for (int i = 0; i < transactions.size(); i++) {
-      transactions.get(i).setIndex(i);
+  /**
+   * Saves the current portfolio to the designated directory in the binary ledger format
+   * of {@link BinaryLedgerFile}.
+   *
+   * @return a string for success of portfolio creation
+   */
+  @Override
+  public String saveBinary() {
+    String path = "portfolios/" + getName() + ".ledger";
+    String msg;
+    if (Files.exists(Path.of(path))) {
+      msg = "Portfolio [" + getName() + "] overwritten successfully and saved to " + path;
+    } else {
+      msg = "Portfolio [" + getName() + "] successfully saved to " + path;
     }
-    for (Transaction transaction : transactions) {
-      if (transaction.getDate().isBefore(curr) || transaction.getDate().isEqual(curr)) {
-        if (transaction.getType()) {
-          buyStockHelper(transaction.getTicker(), transaction.getShares());
-        } else {
-          sellStockHelper(transaction.getTicker(), transaction.getShares());
-        }
-      }
+
+    try {
+      BinaryLedgerFile.write(Path.of(path), ledger.transactions());
+    } catch (IOException e) {
+      System.err.println("Error saving the portfolio: " + e.getMessage());
     }
+    return msg;
   }
 
-  private void buyStockHelper(String ticker, double amount) {
-    // gets the index of the stock
-    int i = getIndex(ticker);
+  /**
+   * Replaces the ledger of the portfolio with many transactions at once, such as the
+   * trades of a file, without checking them one by one. The transactions are sorted by
+   * date and checked in a single replay, which also records the checkpoints, so loading
+   * takes time linear in the number of transactions when they are already sorted.
+   *
+   * @param ledger the transactions, whose order is kept on the same date
+   * @throws IllegalArgumentException if a transaction is in the future or sells a stock
+   *                                  that is not held, naming the transaction by its
+   *                                  position in the list, starting at 1
+   */
+  public synchronized void loadTransactions(List<Transaction> ledger)
+          throws IllegalArgumentException {
+    // the index of each transaction is its position in the list until it is replayed
+    Transaction[] numbered = new Transaction[ledger.size()];
+    boolean sorted = true;
+    for (int i = 0; i < numbered.length; i++) {
+      numbered[i] = ledger.get(i).withIndex(i);
+      sorted = sorted && (i == 0 || !numbered[i].isBefore(numbered[i - 1]));
+    }
+    List<Transaction> ordered = sorted ? Arrays.asList(numbered)
+            : sortByDate(Arrays.asList(numbered));
 
-    // if the stock does not exist already in the portfolio, add the stock and the
-    // share amount, otherwise, add to the existing share amount
-    if (i == -1) {
-      Stock stock;
+    LocalDate today = LocalDate.now();
+    Map<Integer, Double> replayed = new LinkedHashMap<>();
+    List<Map<Integer, Double>> marks = new ArrayList<>();
+    marks.add(new LinkedHashMap<>());
+    for (int i = 0; i < ordered.size(); i++) {
+      Transaction transaction = ordered.get(i);
       try {
-        stock = new BasicStock(ticker);
+        if (transaction.getDate().isAfter(today)) {
+          throw new IllegalArgumentException("Cannot trade a stock in the future.");
+        }
+        if (!transaction.getType() && replayed.isEmpty()) {
+          throw new IllegalArgumentException("There are no stocks in the portfolio.");
+        }
+        Ledger.apply(replayed, transaction);
       } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException("A stock with this ticker does not exist.");
+        throw new IllegalArgumentException("Transaction " + (transaction.getIndex() + 1)
+                + ": " + e.getMessage());
+      }
+      numbered[i] = transaction.withIndex(i);
+      if ((i + 1) % CHECKPOINT_INTERVAL == 0) {
+        marks.add(new LinkedHashMap<>(replayed));
       }
-      stocks.add(stock);
-      shares.add(amount);
-    } else {
-      shares.set(i, shares.get(i) + amount);
     }
+
+    this.ledger = Ledger.of(numbered, marks, replayed);
   }
 
-  private void sellStockHelper(String ticker, double amount) {
-    // checks if the portfolio contains the specified stock
-    int i = getIndex(ticker);
-    if (i == -1) {
-      throw new IllegalArgumentException("There is no such stock in the portfolio.");
+  // stable sort by date, counting the transactions of each day when the dates span few
+  // enough days, which is linear in the number of transactions
+  private static List<Transaction> sortByDate(List<Transaction> ledger) {
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (Transaction transaction : ledger) {
+      first = Math.min(first, transaction.getDate().toEpochDay());
+      last = Math.max(last, transaction.getDate().toEpochDay());
+    }
+    if (last - first > 4L * ledger.size() + 100_000) {
+      List<Transaction> sorted = new ArrayList<>(ledger);
+      sorted.sort(Comparator.comparing(Transaction::getDate));
+      return sorted;
     }
 
-    // if the current stock shares amount is greater than the remove amount, remove
-    // the amount from the current, otherwise, remove the stock completely
-    if (amount < shares.get(i)) {
-      shares.set(i, shares.get(i) - amount);
-    } else {
-      stocks.remove(i);
-      shares.remove(i);
+    int[] starts = new int[(int) (last - first) + 2];
+    for (Transaction transaction : ledger) {
+      starts[(int) (transaction.getDate().toEpochDay() - first) + 1]++;
+    }
+    for (int day = 1; day < starts.length; day++) {
+      starts[day] += starts[day - 1];
+    }
+    Transaction[] sorted = new Transaction[ledger.size()];
+    for (Transaction transaction : ledger) {
+      sorted[starts[(int) (transaction.getDate().toEpochDay() - first)]++] = transaction;
+    }
+    return Arrays.asList(sorted);
+  }
+
+  // gets the positions as of the given date from the current snapshot
+  private Map<Integer, Double> positionsOn(String date) {
+    checkDate(date);
+    return ledger.positionsOn(LocalDate.parse(date));
+  }
+
+  private Stock getStock(int id) {
+    try {
+      return StockRepository.getInstance().get(TickerSymbols.getInstance().getSymbol(id));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("A stock with this ticker does not exist.");
     }
   }
 
   private void addToTransaction(boolean type, String ticker, double amount, String date) {
     Transaction transaction;
     try {
-      transaction = new Transaction(type, ticker, amount, date, transactions.size());
+      transaction = new Transaction(type, ticker, amount, date, ledger.size());
     } catch (IllegalArgumentException e) {
       throw new IllegalArgumentException("Invalid transaction. " + e.getMessage());
     }
-    transactions.add(transaction);
+
+    // the transaction goes after every transaction on or before its date, and a trade
+    // that cannot be made is neither kept nor written to the journal
+    ledger = ledger.add(transaction);
+    logTrades(List.of(transaction));
+  }
+
+  // writes trades that were just added to the ledger to the journal, if there is one
+  private void logTrades(List<Transaction> trades) {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.append(trades, ledger.transactions());
+    } catch (IOException e) {
+      System.err.println("Error saving the portfolio: " + e.getMessage());
+    }
   }
 
-  private String formatDouble(double num) {
+  static String formatDouble(double num) {
     BigDecimal decimal = new BigDecimal(Double.toString(num));
     return decimal.stripTrailingZeros().toPlainString();
   }
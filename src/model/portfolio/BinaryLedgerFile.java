@@ -0,0 +1,173 @@
+package model.portfolio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.user.Transaction;
+
+/**
+ * Binary file format for the ledger of a portfolio, a compact alternative to the CSV
+ * files that can be read without parsing text. The file holds a header with a table of
+ * the tickers in the ledger followed by one fixed width record per transaction, in
+ * ledger order.
+ *
+ * <p>Layout (little endian): magic, version, record count and ticker count as ints, then
+ * each ticker as a short length and its UTF-8 bytes, padded to 8 bytes, then 16 byte
+ * records of the date (epoch day, int), the type (byte, 1 to buy and 0 to sell), a
+ * padding byte, the ticker (index in the table, short) and the shares (long, in hundred
+ * millionths of a share).
+ */
+public final class BinaryLedgerFile {
+
+  static final int MAGIC = 0x504C4742; // "PLGB"
+  static final int VERSION = 1;
+  static final int RECORD_SIZE = 16;
+  static final double SCALE = 100_000_000.0;
+
+  private BinaryLedgerFile() {
+  }
+
+  /**
+   * Writes a ledger to a file, replacing any existing one.
+   *
+   * @param file path of the file
+   * @param ledger the transactions of a portfolio, sorted by date
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the ledger cannot be stored in the format
+   */
+  static void write(Path file, List<Transaction> ledger)
+          throws IOException, IllegalArgumentException {
+    Map<Integer, Integer> indices = new HashMap<>();
+    List<byte[]> tickers = new ArrayList<>();
+    int tableSize = 0;
+    for (Transaction transaction : ledger) {
+      if (indices.putIfAbsent(transaction.getTickerId(), tickers.size()) == null) {
+        byte[] ticker = transaction.getTicker().getBytes(StandardCharsets.UTF_8);
+        tickers.add(ticker);
+        tableSize += Short.BYTES + ticker.length;
+      }
+    }
+    if (tickers.size() > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("The portfolio holds too many stocks to be saved.");
+    }
+
+    int recordOffset = recordOffset(tableSize);
+    ByteBuffer buffer = ByteBuffer.allocate(recordOffset + ledger.size() * RECORD_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(ledger.size()).putInt(tickers.size());
+    for (byte[] ticker : tickers) {
+      buffer.putShort((short) ticker.length).put(ticker);
+    }
+    buffer.position(recordOffset);
+    for (Transaction transaction : ledger) {
+      double shares = Math.rint(transaction.getShares() * SCALE);
+      if (!(shares < Long.MAX_VALUE)) {
+        throw new IllegalArgumentException("Too many shares to be saved: "
+                + transaction.getShares());
+      }
+      buffer.putInt((int) transaction.getDate().toEpochDay())
+              .put((byte) (transaction.getType() ? 1 : 0)).put((byte) 0)
+              .putShort(indices.get(transaction.getTickerId()).shortValue())
+              .putLong((long) shares);
+    }
+    buffer.flip();
+
+    Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".",
+            ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Reads a ledger from a file into a new portfolio. The tickers of the table are looked
+   * up once each, and the transactions are added to the ledger all at once.
+   *
+   * @param file path of the file
+   * @param name name of the portfolio
+   * @return the portfolio holding the ledger
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the file is not a valid ledger
+   */
+  public static BasicPortfolio read(Path file, String name)
+          throws IOException, IllegalArgumentException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("This is not a portfolio ledger file.");
+      }
+      int rows = buffer.getInt(8);
+      int count = buffer.getInt(12);
+      // every ticker of the table takes at least its length, and is indexed by a short
+      if (count < 0 || count > Short.MAX_VALUE || count > (buffer.limit() - 16) / Short.BYTES) {
+        throw new IllegalArgumentException("The ledger file is damaged.");
+      }
+      String[] tickers;
+      try {
+        tickers = new String[count];
+        buffer.position(16);
+        for (int i = 0; i < tickers.length; i++) {
+          byte[] ticker = new byte[buffer.getShort()];
+          buffer.get(ticker);
+          tickers[i] = new String(ticker, StandardCharsets.UTF_8);
+        }
+      } catch (RuntimeException e) {
+        // a negative length, or a table that runs past the end of the file
+        throw new IllegalArgumentException("The ledger file is damaged.");
+      }
+      int recordOffset = recordOffset(buffer.position() - 16);
+      int[] ids = new int[tickers.length];
+      for (int i = 0; i < tickers.length; i++) {
+        ids[i] = Transaction.findTicker(tickers[i]);
+      }
+      if (rows < 0 || buffer.limit() != recordOffset + (long) rows * RECORD_SIZE) {
+        throw new IllegalArgumentException("The ledger file is damaged.");
+      }
+
+      List<Transaction> ledger = new ArrayList<>(rows);
+      LocalDate date = null;
+      for (int i = 0; i < rows; i++) {
+        int at = recordOffset + i * RECORD_SIZE;
+        int ticker = buffer.getShort(at + 6);
+        if (ticker < 0 || ticker >= ids.length) {
+          throw new IllegalArgumentException("The ledger file is damaged.");
+        }
+        // the records are sorted, so transactions on the same date share its object
+        int day = buffer.getInt(at);
+        if (date == null || date.toEpochDay() != day) {
+          date = LocalDate.ofEpochDay(day);
+        }
+        ledger.add(new Transaction(buffer.get(at + 4) == 1, ids[ticker],
+                buffer.getLong(at + 8) / SCALE, date, i));
+      }
+      BasicPortfolio portfolio = new BasicPortfolio(name);
+      portfolio.loadTransactions(ledger);
+      return portfolio;
+    }
+  }
+
+  private static int recordOffset(int tableSize) {
+    return (16 + tableSize + 7) & ~7;
+  }
+}
@@ -0,0 +1,318 @@
+package model.portfolio;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.user.Transaction;
+
+/**
+ * Immutable snapshot of the ledger of a portfolio: its transactions sorted by date, the
+ * positions after every {@link #CHECKPOINT_INTERVAL} transactions and the positions after
+ * the whole ledger. A trade makes a new snapshot instead of changing the current one, so
+ * a snapshot can be read by any number of threads without locking while trades go on.
+ *
+ * <p>Positions are maps from ticker id to shares, in the order the stocks were first
+ * bought, and are never changed once they are in a snapshot. A trade appended after the
+ * last one shares the arrays of the snapshot it extends, which only reads the elements
+ * before its own size, so appending costs time proportional to the number of stocks held
+ * rather than to the length of the ledger.
+ */
+final class Ledger {
+
+  // number of transactions between two checkpoints of the positions
+  static final int CHECKPOINT_INTERVAL = 64;
+
+  static final Ledger EMPTY = new Ledger(new Transaction[0], 0, checkpoints(1), 1,
+          new LinkedHashMap<>(), new AtomicInteger());
+
+  private final Transaction[] transactions; // the first size are part of this snapshot
+  private final int size;
+  // checkpoints[k] holds the positions after the first k * CHECKPOINT_INTERVAL
+  // transactions, up to the first transaction that cannot be applied
+  private final Map<Integer, Double>[] checkpoints;
+  private final int checkpointCount;
+  // positions after every transaction, null if a transaction cannot be applied
+  private final Map<Integer, Double> live;
+  // size of the longest snapshot sharing the arrays, so that only one of the snapshots
+  // made from the same one appends into them
+  private final AtomicInteger extent;
+  // the positions of the last date asked for; a stale memo only costs a replay
+  private volatile Memo memo;
+
+  private Ledger(Transaction[] transactions, int size, Map<Integer, Double>[] checkpoints,
+                 int checkpointCount, Map<Integer, Double> live, AtomicInteger extent) {
+    this.transactions = transactions;
+    this.size = size;
+    this.checkpoints = checkpoints;
+    this.checkpointCount = checkpointCount;
+    this.live = live;
+    this.extent = extent;
+  }
+
+  /**
+   * Makes a snapshot of a ledger that was already replayed.
+   *
+   * @param transactions the transactions, sorted by date and numbered in order
+   * @param marks the positions after every CHECKPOINT_INTERVAL transactions, starting
+   *              with no positions
+   * @param live the positions after every transaction
+   * @return the snapshot
+   */
+  static Ledger of(Transaction[] transactions, List<Map<Integer, Double>> marks,
+                   Map<Integer, Double> live) {
+    Map<Integer, Double>[] checkpoints = checkpoints(marks.size());
+    for (int k = 0; k < marks.size(); k++) {
+      checkpoints[k] = marks.get(k);
+    }
+    return new Ledger(transactions, transactions.length, checkpoints, marks.size(), live,
+            new AtomicInteger(transactions.length));
+  }
+
+  int size() {
+    return size;
+  }
+
+  // the transactions of the snapshot, which cannot be changed through the list
+  List<Transaction> transactions() {
+    return subList(0, size);
+  }
+
+  // the transactions from one index to another, which cannot be changed through the list
+  List<Transaction> subList(int from, int to) {
+    return new AbstractList<Transaction>() {
+      @Override
+      public Transaction get(int index) {
+        if (index < 0 || index >= to - from) {
+          throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return transactions[from + index];
+      }
+
+      @Override
+      public int size() {
+        return to - from;
+      }
+    };
+  }
+
+  // the index of the latest checkpoint at or before the first count transactions
+  int checkpointBefore(int count) {
+    return Math.min(count / CHECKPOINT_INTERVAL, checkpointCount - 1);
+  }
+
+  Map<Integer, Double> checkpoint(int k) {
+    return checkpoints[k];
+  }
+
+  // gets the number of transactions on or before the date, which all come before the
+  // others in the ledger
+  int countUntil(LocalDate date) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (transactions[mid].getDate().isAfter(date)) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the positions as of a date, starting from the latest checkpoint on or before the
+   * date and replaying only the transactions after it.
+   *
+   * @param date the date
+   * @return the positions, which must not be changed
+   * @throws IllegalArgumentException if a transaction up to the date cannot be applied
+   */
+  Map<Integer, Double> positionsOn(LocalDate date) throws IllegalArgumentException {
+    Memo last = memo;
+    if (last != null && last.date.equals(date)) {
+      return last.positions;
+    }
+    int end = countUntil(date);
+    Map<Integer, Double> positions;
+    if (end == size && live != null) {
+      positions = live;
+    } else {
+      int k = checkpointBefore(end);
+      positions = new LinkedHashMap<>(checkpoints[k]);
+      for (int i = k * CHECKPOINT_INTERVAL; i < end; i++) {
+        apply(positions, transactions[i]);
+      }
+    }
+    memo = new Memo(date, positions);
+    return positions;
+  }
+
+  /**
+   * Makes the snapshot with one more transaction, which goes after every transaction on or
+   * before its date. The transaction is not added if it, or a transaction before it,
+   * cannot be applied; a later transaction that it keeps from being applied is kept, and
+   * asking for the positions on or after the date of that one reports the error.
+   *
+   * @param trade the transaction, which is numbered by its place in the ledger
+   * @return the new snapshot
+   * @throws IllegalArgumentException if the transaction cannot be applied where it goes
+   */
+  Ledger add(Transaction trade) throws IllegalArgumentException {
+    int at = countUntil(trade.getDate());
+    Transaction transaction = trade.withIndex(at);
+    if (at < size || live == null) {
+      // replaying from the latest checkpoint reports the error of an earlier transaction
+      Transaction[] merged = new Transaction[size + 1];
+      System.arraycopy(transactions, 0, merged, 0, at);
+      merged[at] = transaction;
+      System.arraycopy(transactions, at, merged, at + 1, size - at);
+      return replay(merged, null, at, at + 1);
+    }
+
+    // a trade on or after the last trade only changes the live positions
+    Map<Integer, Double> next = new LinkedHashMap<>(live);
+    apply(next, transaction);
+    boolean mark = (size + 1) % CHECKPOINT_INTERVAL == 0;
+    Transaction[] array = transactions;
+    Map<Integer, Double>[] marks = checkpoints;
+    AtomicInteger owner = extent;
+    if (size == array.length || (mark && checkpointCount == marks.length)
+            || !extent.compareAndSet(size, size + 1)) {
+      // full, or another snapshot already appended after this one
+      array = Arrays.copyOf(transactions, Math.max(16, size + (size >> 1) + 1));
+      marks = Arrays.copyOf(checkpoints, array.length / CHECKPOINT_INTERVAL + 1);
+      owner = new AtomicInteger(size + 1);
+    }
+    array[size] = transaction;
+    if (mark) {
+      marks[checkpointCount] = next;
+    }
+    return new Ledger(array, size + 1, marks, checkpointCount + (mark ? 1 : 0), next, owner);
+  }
+
+  /**
+   * Makes the snapshot with several more transactions, each of which goes after every
+   * transaction on or before its date. None is added if any of them cannot be applied
+   * where it goes.
+   *
+   * @param batch the transactions, sorted by date
+   * @return the new snapshot
+   * @throws IllegalArgumentException if any of the transactions cannot be applied
+   */
+  Ledger addAll(List<Transaction> batch) throws IllegalArgumentException {
+    Transaction[] merged = new Transaction[size + batch.size()];
+    boolean[] ordered = new boolean[merged.length];
+    int first = -1;
+    int end = 0;
+    int j = 0;
+    int n = 0;
+    for (int i = 0; i <= size; i++) {
+      while (j < batch.size() && (i == size || transactions[i].getDate().isAfter(
+              batch.get(j).getDate()))) {
+        first = first == -1 ? n : first;
+        ordered[n] = true;
+        merged[n++] = batch.get(j++);
+        end = n;
+      }
+      if (i < size) {
+        merged[n++] = transactions[i];
+      }
+    }
+    return replay(merged, ordered, first, end);
+  }
+
+  // makes the snapshot of transactions that are the same as the ones of this snapshot
+  // before the first changed one, replaying from the latest checkpoint before it; a
+  // failure before strictEnd is thrown and a later one is left for readers to report, and
+  // a sell flagged in ordered fails if no stock is held; the transactions that moved are
+  // renumbered as copies, since older snapshots still hold them
+  private Ledger replay(Transaction[] merged, boolean[] ordered, int changed, int strictEnd) {
+    for (int i = changed; i < merged.length; i++) {
+      merged[i] = merged[i].withIndex(i);
+    }
+    int k = checkpointBefore(changed);
+    Map<Integer, Double>[] marks = Arrays.copyOf(checkpoints,
+            merged.length / CHECKPOINT_INTERVAL + 1);
+    int count = k + 1;
+    Map<Integer, Double> positions = new LinkedHashMap<>(checkpoints[k]);
+    for (int i = k * CHECKPOINT_INTERVAL; i < merged.length; i++) {
+      try {
+        if (ordered != null && ordered[i] && !merged[i].getType() && positions.isEmpty()) {
+          throw new IllegalArgumentException("There are no stocks in the portfolio.");
+        }
+        apply(positions, merged[i]);
+      } catch (IllegalArgumentException e) {
+        if (i < strictEnd) {
+          throw e;
+        }
+        Arrays.fill(marks, count, marks.length, null);
+        return new Ledger(merged, merged.length, marks, count, null,
+                new AtomicInteger(merged.length));
+      }
+      if ((i + 1) % CHECKPOINT_INTERVAL == 0) {
+        marks[count++] = new LinkedHashMap<>(positions);
+      }
+    }
+    return new Ledger(merged, merged.length, marks, count, positions,
+            new AtomicInteger(merged.length));
+  }
+
+  // applies a transaction to positions by ticker id
+  static void apply(Map<Integer, Double> positions, Transaction transaction) {
+    if (transaction.getType()) {
+      buyStockHelper(positions, transaction.getTickerId(), transaction.getShares());
+    } else {
+      sellStockHelper(positions, transaction.getTickerId(), transaction.getShares());
+    }
+  }
+
+  private static void buyStockHelper(Map<Integer, Double> positions, int id, double amount) {
+    // if the stock does not exist already in the portfolio, add the stock and the
+    // share amount, otherwise, add to the existing share amount
+    Double held = positions.get(id);
+    if (held == null) {
+      positions.put(id, amount);
+    } else {
+      positions.put(id, held + amount);
+    }
+  }
+
+  private static void sellStockHelper(Map<Integer, Double> positions, int id, double amount) {
+    // checks if the portfolio contains the specified stock
+    Double held = positions.get(id);
+    if (held == null) {
+      throw new IllegalArgumentException("There is no such stock in the portfolio.");
+    }
+
+    // if the current stock shares amount is greater than the remove amount, remove
+    // the amount from the current, otherwise, remove the stock completely
+    if (amount < held) {
+      positions.put(id, held - amount);
+    } else {
+      positions.remove(id);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Map<Integer, Double>[] checkpoints(int length) {
+    Map<Integer, Double>[] checkpoints = new Map[length];
+    checkpoints[0] = new LinkedHashMap<>();
+    return checkpoints;
+  }
+
+  private static final class Memo {
+    private final LocalDate date;
+    private final Map<Integer, Double> positions;
+
+    private Memo(LocalDate date, Map<Integer, Double> positions) {
+      this.date = date;
+      this.positions = positions;
+    }
+  }
+}
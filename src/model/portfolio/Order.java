@@ -0,0 +1,44 @@
+package model.portfolio;
+
+/**
+ * An order to buy or sell shares of a stock on a date, which is submitted to a
+ * {@link Portfolio} together with other orders and becomes a transaction of its ledger.
+ */
+public final class Order {
+  private final boolean buy;
+  private final String ticker;
+  private final double shares;
+  private final String date;
+
+  /**
+   * Constructs an order to either buy or sell shares of a stock. The order is checked
+   * when it is submitted to a portfolio.
+   *
+   * @param buy true to buy shares, false to sell them
+   * @param ticker ticker of the stock
+   * @param shares number of shares to buy or sell
+   * @param date date of the order
+   */
+  public Order(boolean buy, String ticker, double shares, String date) {
+    this.buy = buy;
+    this.ticker = ticker;
+    this.shares = shares;
+    this.date = date;
+  }
+
+  public boolean getType() {
+    return buy;
+  }
+
+  public String getTicker() {
+    return ticker;
+  }
+
+  public double getShares() {
+    return shares;
+  }
+
+  public String getDate() {
+    return date;
+  }
+}
@@ -46,6 +46,27 @@ public interface Portfolio {
    */
   List<String> getDistribution(String date);
 
+  /**
+   * Gets the value of the portfolio on every day between two dates, inclusive, computed
+   * in a single pass over the transactions and the prices.
+   *
+   * @param from first date of the range
+   * @param to last date of the range
+   * @return the values of the portfolio
+   * @throws IllegalArgumentException if a date is invalid or the range is empty
+   */
+  PortfolioValuation getValues(String from, String to) throws IllegalArgumentException;
+
+  /**
+   * Gets a copy of the portfolio as it is now, which trades made on the portfolio later
+   * do not change. Reading several things from the copy, such as the stocks and then
+   * their shares, gives consistent answers even while another thread trades. Taking a
+   * copy does not copy the ledger.
+   *
+   * @return the copy of the portfolio, which is not saved or journaled
+   */
+  Portfolio snapshot();
+
   /**
    * Adds a stock to the portfolio.
    *
@@ -64,6 +85,16 @@ public interface Portfolio {
    */
   void sellStock(String ticker, double amount, String date);
 
+  /**
+   * Buys and sells stocks with several orders at once. The orders are checked together,
+   * as if they were made one after the other in date order, and none of them is made if
+   * any of them is invalid. Orders on the same date keep the order they are given in.
+   *
+   * @param orders the orders to make
+   * @throws IllegalArgumentException if any of the orders is invalid
+   */
+  void submitOrders(List<Order> orders) throws IllegalArgumentException;
+
   /**
    * Checks if the portfolio has stocks inside.
    *
@@ -78,6 +109,19 @@ public interface Portfolio {
    */
   String save();
 
+  /**
+   * Closes the files the portfolio keeps open to journal its trades, after forcing the
+   * trades to the disk. Trading again opens them again.
+   */
+  void close();
+
+  /**
+   * Saves the current portfolio to the designated directory in a binary format, which is
+   * smaller than the CSV file and faster to load.
+   * @return a string for success of portfolio creation
+   */
+  String saveBinary();
+
   /*
    * DESIGN CHANGES FOR ASSIGNMENT 5:
    *
@@ -0,0 +1,299 @@
+package model.portfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import model.user.Transaction;
+
+/**
+ * Journal of the trades of a saved portfolio, so that each trade is written to disk as it
+ * is made instead of rewriting the whole portfolio file on every save. The portfolio file,
+ * {@code <name>.csv}, is a snapshot of the ledger and the journal, {@code <name>.journal},
+ * holds the trades made after it, one line per trade:
+ *
+ * <pre>number,date,type,ticker,amount,checksum</pre>
+ *
+ * <p>Trades are numbered in the order they are made, so that the trades of the journal
+ * that are already in the snapshot, the first as many as it has rows, are skipped when
+ * the portfolio is recovered, even if the program stopped while the snapshot was being
+ * replaced. A line that was only partly written when the program stopped does not match
+ * its checksum, and is dropped.
+ *
+ * <p>Trades reach the operating system as soon as they are appended, so they survive the
+ * program stopping. They are forced to the disk itself in groups, a short time after the
+ * first trade of the group, so that a burst of trades costs a single disk sync. Once the
+ * journal holds as many trades as the snapshot, both are compacted into a new snapshot.
+ *
+ * <p>A journal that did not recover a saved portfolio, such as the journal of a portfolio
+ * that was just created, writes the whole ledger as the snapshot on the first trade. It
+ * never replaces the file of another portfolio with the same name: its trades are not
+ * journaled until the portfolio is saved explicitly. The journal keeps its file open
+ * between trades until it is closed.
+ */
+public final class PortfolioJournal implements Closeable {
+
+  /**
+   * Time in milliseconds appended trades may wait before they are forced to the disk.
+   */
+  public static final long SYNC_DELAY_MILLIS = 50;
+
+  // the journal is never compacted while it holds fewer trades than this
+  private static final int MIN_COMPACT_RECORDS = 1024;
+
+  private static final String HEADER = "Date,Type,Ticker,Amount\n";
+
+  private static final ScheduledExecutorService SYNCER =
+          Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "portfolio-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final Path snapshot;
+  private final Path journal;
+  private FileChannel channel; // opened on the first append
+  private int snapshotRows;
+  private int records;
+  private boolean syncScheduled;
+  // whether the snapshot holds the ledger of this portfolio, so trades can be appended
+  private boolean started;
+
+  /**
+   * Constructs the journal of a portfolio. No file is read or written until the journal
+   * is used.
+   *
+   * @param dir directory holding the portfolio files
+   * @param name name of the portfolio
+   */
+  public PortfolioJournal(Path dir, String name) {
+    this.snapshot = dir.resolve(name + ".csv");
+    this.journal = dir.resolve(name + ".journal");
+  }
+
+  /**
+   * Constructs the journal of a portfolio in the portfolios folder. No file is read or
+   * written until the journal is used.
+   *
+   * @param name name of the portfolio
+   */
+  public PortfolioJournal(String name) {
+    this(Path.of("portfolios"), name);
+  }
+
+  /**
+   * Checks if there is a portfolio file with the name of the journal, which the journal
+   * does not replace unless it recovered it or the portfolio is saved.
+   *
+   * @return true if the file exists, false otherwise
+   */
+  public boolean exists() {
+    return Files.exists(snapshot);
+  }
+
+  /**
+   * Reads the trades of the journal that are not in the snapshot of the portfolio, and
+   * drops a trade that was only partly written at the end of the journal.
+   *
+   * @param rows number of trades in the snapshot
+   * @return the trades made after the snapshot, in the order they were made
+   * @throws IOException if the journal cannot be read
+   */
+  public synchronized List<Order> recover(int rows) throws IOException {
+    snapshotRows = rows;
+    records = 0;
+    started = true;
+    List<Order> orders = new ArrayList<>();
+    if (!Files.exists(journal)) {
+      return orders;
+    }
+
+    byte[] bytes = Files.readAllBytes(journal);
+    int start = 0;
+    while (start < bytes.length) {
+      int end = start;
+      while (end < bytes.length && bytes[end] != '\n') {
+        end++;
+      }
+      // the checksum covers the line up to the comma before it
+      int comma = end;
+      while (comma > start && bytes[comma - 1] != ',') {
+        comma--;
+      }
+      if (end == bytes.length || comma == start) {
+        break;
+      }
+      String[] parts = new String(bytes, start, end - start, StandardCharsets.UTF_8).split(",");
+      if (parts.length != 6 || !parts[5].equals(checksum(bytes, start, comma - 1))) {
+        break;
+      }
+      try {
+        if (Integer.parseInt(parts[0]) > rows) {
+          orders.add(new Order(parts[2].equals("BUY"), parts[3],
+                  Double.parseDouble(parts[4]), parts[1]));
+        }
+      } catch (NumberFormatException e) {
+        break;
+      }
+      records++;
+      start = end + 1;
+    }
+    if (start < bytes.length) {
+      // the rest was being written when the program stopped
+      try (FileChannel file = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+        file.truncate(start);
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Appends trades that were just added to a ledger, and compacts the journal if it has
+   * grown as large as the snapshot.
+   *
+   * @param trades the trades, in the order they were made
+   * @param ledger every trade of the portfolio, including the new ones
+   * @throws IOException if the journal cannot be written, or if it would replace the
+   *                     file of another portfolio
+   */
+  synchronized void append(List<Transaction> trades, List<Transaction> ledger)
+          throws IOException {
+    if (!started) {
+      if (exists()) {
+        throw new IOException(snapshot + " holds another portfolio, save the portfolio "
+                + "to replace it");
+      }
+      compact(ledger);
+      return;
+    }
+    int number = ledger.size() - trades.size();
+    StringBuilder lines = new StringBuilder();
+    for (Transaction trade : trades) {
+      number++;
+      String line = number + "," + trade.getDate() + "," + (trade.getType() ? "BUY" : "SELL")
+              + "," + trade.getTicker() + "," + BasicPortfolio.formatDouble(trade.getShares());
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      lines.append(line).append(',').append(checksum(bytes, 0, bytes.length)).append('\n');
+    }
+    if (channel == null) {
+      channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+    }
+    // one write for the whole batch
+    ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    records += trades.size();
+
+    if (records >= Math.max(MIN_COMPACT_RECORDS, snapshotRows)) {
+      compact(ledger);
+    } else if (!syncScheduled) {
+      syncScheduled = true;
+      SYNCER.schedule(this::syncQuietly, SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Replaces the snapshot with the whole ledger and empties the journal.
+   *
+   * @param ledger every trade of the portfolio, sorted by date
+   * @throws IOException if the snapshot cannot be written
+   */
+  synchronized void compact(List<Transaction> ledger) throws IOException {
+    StringBuilder rows = new StringBuilder(HEADER);
+    for (Transaction transaction : ledger) {
+      rows.append(transaction.getDate()).append(',')
+              .append(transaction.getType() ? "BUY" : "SELL").append(',')
+              .append(transaction.getTicker()).append(',')
+              .append(BasicPortfolio.formatDouble(transaction.getShares())).append('\n');
+    }
+    // the old snapshot stays in place until the new one is complete on disk
+    Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(rows.toString().getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining()) {
+        file.write(buffer);
+      }
+      file.force(true);
+    }
+    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+    Files.deleteIfExists(journal);
+    snapshotRows = ledger.size();
+    records = 0;
+    started = true;
+  }
+
+  /**
+   * Forces the trades appended so far to the disk.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  public synchronized void sync() throws IOException {
+    syncScheduled = false;
+    if (channel != null) {
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Forces the trades appended so far to the disk and closes the journal file. A later
+   * trade opens it again.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    syncScheduled = false;
+    if (channel != null) {
+      try {
+        channel.force(false);
+      } finally {
+        channel.close();
+        channel = null;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of trades in the journal, which are not in the snapshot yet.
+   *
+   * @return the number of trades
+   */
+  public synchronized int getRecords() {
+    return records;
+  }
+
+  private void syncQuietly() {
+    try {
+      sync();
+    } catch (IOException e) {
+      System.err.println("Error saving the portfolio: " + e.getMessage());
+    }
+  }
+
+  private static String checksum(byte[] bytes, int from, int to) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, from, to - from);
+    return String.format("%08x", crc.getValue());
+  }
+}
@@ -0,0 +1,200 @@
+package model.portfolio;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.stock.Stock;
+import model.stock.StockRepository;
+import model.stock.TickerSymbols;
+import model.stock.TradingCalendar;
+import model.user.Transaction;
+
+/**
+ * The value of a portfolio on every day of a date range, meaning the sum of the value of
+ * every stock held at the closing price of that day, or of the most recent day before it
+ * with price data. The whole range is computed in a single forward pass that applies the
+ * transactions of the ledger on their dates while moving along the closing prices of each
+ * stock held, so that graphs and statistics can sample as many days as they need without
+ * replaying the ledger for each of them. Days that are not trading days of any loaded
+ * stock, such as weekends and holidays, are resolved through the shared
+ * {@link TradingCalendar} and take the value of the day before unless a trade is made on
+ * them.
+ */
+public final class PortfolioValuation {
+
+  private final long first; // epoch day of the first day of the range
+  private final double[] values; // NaN on the days a stock held has no price data
+  // the first day on which the positions could not be computed, and why
+  private long failedDay = Long.MAX_VALUE;
+  private String failure;
+
+  /**
+   * Computes the value of a portfolio on every day of a range.
+   *
+   * @param from first day of the range
+   * @param to last day of the range
+   * @param positions shares held of each stock by ticker id as of some day before the
+   *                  range, which are not changed
+   * @param ledger the transactions made after those positions up to the last day of the
+   *               range, sorted by date
+   */
+  PortfolioValuation(LocalDate from, LocalDate to, Map<Integer, Double> positions,
+                     List<Transaction> ledger) {
+    this.first = from.toEpochDay();
+    this.values = new double[(int) (to.toEpochDay() - first + 1)];
+
+    Map<Integer, Double> held = new LinkedHashMap<>(positions);
+    Map<Integer, Closes> closes = new HashMap<>();
+    long last = to.toEpochDay();
+    int next = 0;
+    // the shared trading calendar holding every row of the stocks held, or null if a
+    // stock has a row the calendar does not hold, and the trading day of the day before
+    TradingCalendar calendar = null;
+    int tradingDay = -2;
+    for (long day = first; day <= last; day++) {
+      try {
+        // every transaction up to the day, including the ones before the range
+        boolean traded = false;
+        while (next < ledger.size() && ledger.get(next).getDate().toEpochDay() <= day) {
+          Ledger.apply(held, ledger.get(next));
+          next++;
+          traded = true;
+        }
+        // no stock has a row between the previous trading day and a weekend or holiday,
+        // so the positions are worth what they were worth the day before
+        int today = calendar == null ? -2 : calendar.floorOrdinal(day);
+        if (!traded && today != -2 && today == tradingDay) {
+          values[(int) (day - first)] = values[(int) (day - first - 1)];
+          continue;
+        }
+        double value = 0.0;
+        boolean loaded = false;
+        for (Map.Entry<Integer, Double> position : held.entrySet()) {
+          Closes stock = closes.get(position.getKey());
+          if (stock == null) {
+            stock = new Closes(getStock(position.getKey()), day, last);
+            closes.put(position.getKey(), stock);
+            loaded = true;
+          }
+          value += stock.on(day) * position.getValue();
+        }
+        values[(int) (day - first)] = value;
+        if (loaded || day == first) {
+          // the calendar only grows as stocks are loaded, unless the repository is
+          // cleared, so the one read after loading holds them if it holds their rows
+          calendar = StockRepository.getInstance().getCalendar();
+          for (Closes stock : closes.values()) {
+            if (!stock.within(calendar)) {
+              calendar = null;
+              break;
+            }
+          }
+          today = calendar == null ? -2 : calendar.floorOrdinal(day);
+        }
+        tradingDay = today;
+      } catch (IllegalArgumentException e) {
+        // the positions of every later day depend on the ones of this day
+        failedDay = day;
+        failure = e.getMessage();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gets the first day of the range.
+   *
+   * @return the first day
+   */
+  public LocalDate getFrom() {
+    return LocalDate.ofEpochDay(first);
+  }
+
+  /**
+   * Gets the last day of the range.
+   *
+   * @return the last day
+   */
+  public LocalDate getTo() {
+    return LocalDate.ofEpochDay(first + values.length - 1);
+  }
+
+  /**
+   * Gets the value of the portfolio on a day of the range.
+   *
+   * @param date day within the range
+   * @return the value of the portfolio, not rounded
+   * @throws IllegalArgumentException if the date is outside of the range, if a stock held
+   *                                  on the date has no price data on or before it, or if
+   *                                  the positions on the date cannot be computed
+   */
+  public double getValue(LocalDate date) throws IllegalArgumentException {
+    long day = date.toEpochDay();
+    if (day < first || day >= first + values.length) {
+      throw new IllegalArgumentException("The date is outside of the valuation range.");
+    }
+    if (day >= failedDay) {
+      throw new IllegalArgumentException(failure);
+    }
+    double value = values[(int) (day - first)];
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("No data found on this date.");
+    }
+    return value;
+  }
+
+  private static Stock getStock(int id) {
+    try {
+      return StockRepository.getInstance().get(TickerSymbols.getInstance().getSymbol(id));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("A stock with this ticker does not exist.");
+    }
+  }
+
+  // the closing prices of a stock from the day it is first held to the end of the range,
+  // read through a cursor that only moves forward in time
+  private static final class Closes {
+    private final IntBuffer dates;
+    private final DoubleBuffer prices;
+    private int at; // index of the most recent row on or before the last day asked for
+
+    private Closes(Stock stock, long from, long to) {
+      // rows are ordered from the most recent date, so the range ends at the row of
+      // the first day
+      int newest = stock.getIndex(LocalDate.ofEpochDay(to).toString());
+      int oldest = stock.getIndex(LocalDate.ofEpochDay(from).toString());
+      if (newest == -1) {
+        newest = 0;
+        oldest = -1; // no data up to the end of the range
+      } else if (oldest == -1) {
+        oldest = stock.getSize() - 1;
+      }
+      this.dates = stock.getDates(newest, oldest + 1);
+      this.prices = stock.getClosingPrices(newest, oldest + 1);
+      this.at = oldest - newest;
+    }
+
+    // whether every row in the range is a trading day of the calendar
+    private boolean within(TradingCalendar calendar) {
+      for (int i = 0; i < dates.limit(); i++) {
+        if (calendar.ordinalOf(dates.get(i)) == -1) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // the closing price on the day, or NaN if there is no data on or before the day
+    private double on(long day) {
+      while (at > 0 && dates.get(at - 1) <= day) {
+        at--;
+      }
+      return at >= 0 && dates.get(at) <= day ? prices.get(at) : Double.NaN;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package model.stock;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Client for the daily time series of the Alpha Vantage API. The base URL and API key
+ * can be given explicitly, which allows pointing the program at a local stand-in of the
+ * API.
+ */
+public class AlphaVantageClient {
+
+  /**
+   * Base URL of the Alpha Vantage API.
+   */
+  public static final String DEFAULT_URL = "https://www.alphavantage.co/query";
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int SNIFF_SIZE = 1024;
+
+  private final String baseUrl;
+  private final String apiKey;
+
+  /**
+   * Constructs a client for the Alpha Vantage API that reads its key from apikey.txt.
+   */
+  public AlphaVantageClient() {
+    this(DEFAULT_URL, null);
+  }
+
+  /**
+   * Constructs a client for an API at the given URL.
+   *
+   * @param baseUrl URL of the query endpoint
+   * @param apiKey key to query with, or null to read it from apikey.txt
+   */
+  public AlphaVantageClient(String baseUrl, String apiKey) {
+    this.baseUrl = baseUrl;
+    this.apiKey = apiKey;
+  }
+
+  /**
+   * Downloads the daily prices of a stock as CSV. The response is streamed in chunks;
+   * only the first chunk is checked for an error message from the API, and if a target
+   * file is given, the chunks are written to a temporary file next to it that replaces
+   * the target atomically once the whole response has been received.
+   *
+   * @param ticker of the stock
+   * @param full true for the full history, false for only the latest 100 days
+   * @param target file to save the response to, or null to not save it
+   * @return the CSV response of the API, from position 0 to the limit of the buffer
+   * @throws IllegalArgumentException if the API has no data for the ticker
+   */
+  ByteBuffer download(String ticker, boolean full, Path target)
+          throws IllegalArgumentException {
+    String key = apiKey == null ? getAPIKey() : apiKey;
+    URL url;
+
+    try {
+      url = new URL(baseUrl + "?function=TIME_SERIES_DAILY"
+              + "&outputsize=" + (full ? "full" : "compact") + "&symbol=" + ticker
+              + "&apikey=" + key + "&datatype=csv");
+    } catch (MalformedURLException e) {
+      throw new RuntimeException("the Alpha Vantage API has either changed or "
+              + "no longer works");
+    }
+
+    Path tmp = null;
+    try {
+      URLConnection connection = url.openConnection();
+      // size the buffer up front when the length of the response is known
+      long length = connection.getContentLengthLong();
+      byte[] data = new byte[length > 0 && length < Integer.MAX_VALUE - 8
+              ? (int) length + 1 : CHUNK_SIZE];
+      InputStream in = connection.getInputStream();
+      FileChannel out = null;
+      if (target != null) {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        tmp = Files.createTempFile(dir, target.getFileName() + ".", ".tmp");
+        out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+      }
+
+      int size = 0;
+      int written = 0;
+      boolean sniffed = false;
+      try {
+        int n;
+        while ((n = in.read(data, size, data.length - size)) != -1) {
+          size += n;
+          if (!sniffed && size >= SNIFF_SIZE) {
+            checkError(ticker, data, size);
+            sniffed = true;
+          }
+          if (sniffed && out != null) {
+            written += writeFully(out, data, written, size);
+          }
+          if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+          }
+        }
+        if (!sniffed) {
+          checkError(ticker, data, size);
+        }
+        if (out != null) {
+          writeFully(out, data, written, size);
+        }
+      } finally {
+        in.close();
+        if (out != null) {
+          out.close();
+        }
+      }
+
+      if (tmp != null) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      }
+      return ByteBuffer.wrap(data, 0, size);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("No price data found for " + ticker);
+    } finally {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+          System.err.println("Error deleting temporary file: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  // Check if the API returned an error, which it does in place of the CSV header
+  private void checkError(String ticker, byte[] data, int size) {
+    String start = new String(data, 0, Math.min(size, SNIFF_SIZE), StandardCharsets.US_ASCII);
+    if (start.contains("Error Message") || start.contains("Information")) {
+      throw new IllegalArgumentException("The ticker '" + ticker
+              + "' is not available on Alpha Vantage API or you have ran out of API requests.");
+    }
+  }
+
+  private static int writeFully(FileChannel out, byte[] data, int from, int to)
+          throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(data, from, to - from);
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    return to - from;
+  }
+
+  private String getAPIKey() {
+    String apiKey = null;
+    String path = "apikey.txt";  // Adjust this path as needed
+
+    try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+      apiKey = br.readLine().trim();
+    } catch (IOException e) {
+      System.err.println("Error reading API key file: " + e.getMessage());
+      System.err.println("Please ensure that the file '" + path
+              + "' exists and contains a valid API key.");
+      throw new RuntimeException("Failed to read API key", e);
+    }
+
+    if (apiKey == null || apiKey.isEmpty()) {
+      throw new RuntimeException("API key is empty or not found in '" + path + "'");
+    }
+
+    return apiKey;
+  }
+}
@@ -0,0 +1,106 @@
+package model.stock;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Implementation of the {@link PriceSeries} interface that keeps its columns in
+ * primitive arrays on the heap.
+ */
+public class ArrayPriceSeries implements PriceSeries {
+
+  private final int[] dates;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final long[] volume;
+
+  /**
+   * Constructs a series over the given columns. The arrays are not copied, so the
+   * caller must not modify them afterwards.
+   *
+   * @param dates epoch days, most recent first
+   * @param open opening prices correlated to the dates
+   * @param high highest prices correlated to the dates
+   * @param low lowest prices correlated to the dates
+   * @param close closing prices correlated to the dates
+   * @param volume traded volumes correlated to the dates
+   */
+  public ArrayPriceSeries(int[] dates, double[] open, double[] high, double[] low,
+                          double[] close, long[] volume) {
+    int n = dates.length;
+    if (open.length != n || high.length != n || low.length != n || close.length != n
+            || volume.length != n) {
+      throw new IllegalArgumentException("All price columns must be the same length.");
+    }
+    this.dates = dates;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
+  /**
+   * Constructs a series over columns that were read from a file.
+   * @param columns trimmed price columns
+   */
+  ArrayPriceSeries(PriceColumns columns) {
+    this(columns.dates, columns.open, columns.high, columns.low, columns.close,
+            columns.volume);
+  }
+
+  @Override
+  public int size() {
+    return dates.length;
+  }
+
+  @Override
+  public int getDate(int index) {
+    return dates[index];
+  }
+
+  @Override
+  public double getOpen(int index) {
+    return open[index];
+  }
+
+  @Override
+  public double getHigh(int index) {
+    return high[index];
+  }
+
+  @Override
+  public double getLow(int index) {
+    return low[index];
+  }
+
+  @Override
+  public double getClose(int index) {
+    return close[index];
+  }
+
+  @Override
+  public long getVolume(int index) {
+    return volume[index];
+  }
+
+  @Override
+  public IntBuffer dates(int from, int to) {
+    checkRange(from, to);
+    return IntBuffer.wrap(dates, from, to - from).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public DoubleBuffer closes(int from, int to) {
+    checkRange(from, to);
+    return DoubleBuffer.wrap(close, from, to - from).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public long sizeInBytes() {
+    // six array headers plus the primitive columns
+    return 96L + (long) dates.length * (Integer.BYTES + 4 * Double.BYTES + Long.BYTES);
+  }
+}
@@ -0,0 +1,62 @@
+package model.stock;
+
+/**
+ * This class represents the prices and traded volume of a stock on a single trading day.
+ */
+public class Bar {
+  private final String date;
+  private final double open;
+  private final double high;
+  private final double low;
+  private final double close;
+  private final long volume;
+
+  /**
+   * Constructs a bar for a trading day.
+   *
+   * @param date of the trading day
+   * @param open opening price
+   * @param high highest price
+   * @param low lowest price
+   * @param close closing price
+   * @param volume number of shares traded
+   */
+  public Bar(String date, double open, double high, double low, double close, long volume) {
+    this.date = date;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
+  public String getDate() {
+    return date;
+  }
+
+  public double getOpen() {
+    return open;
+  }
+
+  public double getHigh() {
+    return high;
+  }
+
+  public double getLow() {
+    return low;
+  }
+
+  public double getClose() {
+    return close;
+  }
+
+  public long getVolume() {
+    return volume;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: open %.2f, high %.2f, low %.2f, close %.2f, volume %d", date,
+            open, high, low, close, volume);
+  }
+}
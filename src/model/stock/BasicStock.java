@@ -1,38 +1,61 @@
 package model.stock;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Basic implementation of the {@link Stock} interface. In this implementation,
- * stocks are represented by their ticker, a list of dates, and prices correlated to
- * those dates.
+ * stocks are represented by their ticker and a {@link PriceSeries} holding a column of
+ * dates (as epoch days) and a column of prices correlated to those dates. Both columns
+ * are ordered from the most recent date to the oldest date, matching the order of the
+ * CSV data. Price data is shared through the {@link StockRepository}, so constructing a
+ * stock for a ticker that has already been loaded does not read the data again.
  */
 public class BasicStock implements Stock {
 
-  private final String ticker; // stock symbol / ticker
-  private List<String> dates;
-  private List<Double> prices;
-  private final String path;
+  private final String ticker; // stock symbol / ticker, in upper case
+  private final PriceSeries series;
+  private final TradingCalendar calendar;
+  private final int newestOrdinal; // calendar ordinal of the first row
+  private final boolean dense; // whether the series has every calendar day in its range
 
   /**
    * Constructs a basic stock object.
    * @param ticker of the stock
    */
   public BasicStock(String ticker) {
+    this(StockRepository.getInstance().getShared(ticker));
+  }
+
+  private BasicStock(BasicStock shared) {
+    this.ticker = shared.ticker;
+    this.series = shared.series;
+    this.calendar = shared.calendar;
+    this.newestOrdinal = shared.newestOrdinal;
+    this.dense = shared.dense;
+  }
+
+  /**
+   * Constructs a basic stock object over already loaded price data.
+   * @param ticker of the stock, in upper case
+   * @param series price data of the stock
+   * @param calendar trading calendar holding every day of the series
+   */
+  BasicStock(String ticker, PriceSeries series, TradingCalendar calendar) {
     this.ticker = ticker;
-    this.path = "data/" + ticker + ".csv";
-    this.getData();
+    this.series = series;
+    this.calendar = calendar;
+    if (series.size() == 0) {
+      this.newestOrdinal = -1;
+      this.dense = false;
+    } else {
+      this.newestOrdinal = calendar.ordinalOf(series.getDate(0));
+      int oldestOrdinal = calendar.ordinalOf(series.getDate(series.size() - 1));
+      this.dense = newestOrdinal != -1 && newestOrdinal - oldestOrdinal + 1 == series.size();
+    }
   }
 
   /**
@@ -42,7 +65,7 @@ public class BasicStock implements Stock {
    */
   @Override
   public String getTicker() {
-    return ticker.toUpperCase();
+    return ticker;
   }
 
   /**
@@ -51,7 +74,11 @@ public class BasicStock implements Stock {
    */
   @Override
   public List<Double> getAllClosingPrices() {
-    return new ArrayList<>(prices);
+    List<Double> res = new ArrayList<>(series.size());
+    for (int i = 0; i < series.size(); i++) {
+      res.add(series.getClose(i));
+    }
+    return res;
   }
 
   /**
@@ -61,169 +88,152 @@ public class BasicStock implements Stock {
    */
   @Override
   public List<String> getAllDates() {
-    return new ArrayList<>(dates);
+    List<String> res = new ArrayList<>(series.size());
+    for (int i = 0; i < series.size(); i++) {
+      res.add(LocalDate.ofEpochDay(series.getDate(i)).toString());
+    }
+    return res;
   }
 
   /**
-   * Gets the closing price of the stock on a specified date.
+   * Gets the number of valid dates of the stock.
    *
-   * @param date specified date
-   * @return the closing price
+   * @return the number of dates
    */
   @Override
-  public double getClosingPrice(String date) throws IllegalArgumentException {
-    LocalDate todayDate = LocalDate.now();
-    String today = todayDate.toString();
-    LocalDate current = LocalDate.now();
-    if (current.isBefore(LocalDate.parse(date))) {
-      throw new IllegalArgumentException("We cannot predict future stock price.");
-    }
-    int i = getIndex(date);
-    if (i == -1) {
-      throw new IllegalArgumentException("No data on this date.");
-    }
-    return prices.get(i);
+  public int getSize() {
+    return series.size();
   }
 
   /**
-   * Gets the index of the closing prices list given the date.
+   * Gets a read-only view of the closing prices between two indices of the closing
+   * prices list. The view shares the price data of the stock instead of copying it.
    *
-   * @param date specified date
-   * @return the index of the closing prices list
+   * @param from index of the first price, inclusive
+   * @param to index of the last price, exclusive
+   * @return the closing prices within the range
    */
-  public int getIndex(String date) {
-    if (outOfRange(date)) {
-      return -1;
-    }
-
-    String recent = getMostRecentDate(date);
-
-    return dates.indexOf(recent);
+  @Override
+  public DoubleBuffer getClosingPrices(int from, int to) {
+    return series.closes(from, to);
   }
 
-  private boolean outOfRange(String date) {
-    LocalDate current = LocalDate.now();
-    String oldest = dates.get(dates.size() - 1);
-    return current.isBefore(LocalDate.parse(oldest));
+  /**
+   * Gets a read-only view of the dates between two indices of the dates list, as epoch
+   * days. The view shares the price data of the stock instead of copying it.
+   *
+   * @param from index of the first date, inclusive
+   * @param to index of the last date, exclusive
+   * @return the dates within the range
+   */
+  @Override
+  public IntBuffer getDates(int from, int to) {
+    return series.dates(from, to);
   }
 
-  private String getMostRecentDate(String date) {
-    LocalDate recent = LocalDate.parse(date);
-    if (dates.contains(recent.toString())) {
-      return recent.toString();
-    } else {
-      recent = recent.minusDays(1);
-      return getMostRecentDate(recent.toString());
-    }
+  /**
+   * Gets the closing price of the stock on a specified date.
+   *
+   * @param date specified date
+   * @return the closing price
+   */
+  @Override
+  public double getClosingPrice(String date) throws IllegalArgumentException {
+    return series.getClose(getDataIndex(date));
   }
 
-  private void getData() {
-    if (!Files.exists(Path.of(path))) {
-      getDataFromAPI();
-    }
-    readCSV();
+  /**
+   * Gets the number of shares of the stock traded on a specified date.
+   *
+   * @param date specified date
+   * @return the traded volume
+   */
+  @Override
+  public long getVolume(String date) throws IllegalArgumentException {
+    return series.getVolume(getDataIndex(date));
   }
 
-  private void getDataFromAPI() {
-    String apiKey = getAPIKey();
-    URL url;
-
-    try {
-      url = new URL("https://www.alphavantage"
-              + ".co/query?function=TIME_SERIES_DAILY"
-              + "&outputsize=full&symbol=" + ticker
-              + "&apikey=" + apiKey + "&datatype=csv");
-    } catch (MalformedURLException e) {
-      throw new RuntimeException("the Alpha Vantage API has either changed or "
-              + "no longer works");
+  /**
+   * Gets the daily bars of the stock between two dates, inclusive, ordered from the
+   * most recent date to the oldest date.
+   *
+   * @param from the oldest date of the range
+   * @param to the most recent date of the range
+   * @return a list of bars within the range
+   */
+  @Override
+  public List<Bar> getBars(String from, String to) throws IllegalArgumentException {
+    long fromDay = LocalDate.parse(from).toEpochDay();
+    long toDay = LocalDate.parse(to).toEpochDay();
+    if (toDay < fromDay) {
+      throw new IllegalArgumentException("The start date must be before the end date.");
     }
-
-    InputStream in = null;
-    StringBuilder output = new StringBuilder();
-
-    try {
-      in = url.openStream();
-      int b;
-
-      while ((b = in.read()) != -1) {
-        output.append((char) b);
-      }
-
-      // Check if the API returned an error
-      String response = output.toString();
-
-      if (response.contains("Error Message") || response.contains("Information")) {
-        throw new IllegalArgumentException("The ticker '" + ticker
-                + "' is not available on Alpha Vantage API or you have ran out of API requests.");
-      }
-
-      try (FileWriter writer = new FileWriter(path)) {
-        writer.write(response);
-      } catch (IOException e) {
-        System.err.println("Error writing to file: " + e.getMessage());
-      }
-
-    } catch (IOException e) {
-      throw new IllegalArgumentException("No price data found for " + ticker);
+    List<Bar> res = new ArrayList<>();
+    // the range is from the most recent row on or before the end date up to the first
+    // row before the start date
+    int start = getIndex(toDay);
+    if (start == -1) {
+      return res;
     }
-
-    try (FileWriter writer = new FileWriter(path)) {
-      writer.write(output.toString());
-    } catch (IOException e) {
-      System.err.println("Error writing to file: " + e.getMessage());
+    int end = getIndex(fromDay - 1);
+    if (end == -1) {
+      end = series.size();
     }
+    for (int i = start; i < end; i++) {
+      res.add(new Bar(LocalDate.ofEpochDay(series.getDate(i)).toString(), series.getOpen(i),
+              series.getHigh(i), series.getLow(i), series.getClose(i), series.getVolume(i)));
+    }
+    return res;
   }
 
-  private void readCSV() {
-    dates = new ArrayList<>();
-    prices = new ArrayList<>();
-
-    try {
-      BufferedReader br = new BufferedReader(new FileReader(path));
-
-      String line = br.readLine();
-      String[] headers = line.split(",");
-      int dateIndex = findIndex(headers, "timestamp");
-      int closingIndex = findIndex(headers, "close");
+  /**
+   * Gets the index of the closing prices list given the date. If there is no data on
+   * the date itself (weekends, holidays), the index of the most recent date before it
+   * is returned.
+   *
+   * @param date specified date
+   * @return the index of the closing prices list, or -1 if the date is older than the data
+   */
+  public int getIndex(String date) {
+    return getIndex(LocalDate.parse(date).toEpochDay());
+  }
 
-      while ((line = br.readLine()) != null) {
-        String[] values = line.split(",");
-        dates.add(values[dateIndex]);
-        prices.add(Double.parseDouble(values[closingIndex]));
-      }
-    } catch (IOException e) {
-      System.err.println("Error reading file: " + e.getMessage());
-    } catch (NumberFormatException e) {
-      System.err.println("Error parsing number: " + e.getMessage());
+  // when the series has a row for every calendar day in its range, the index is the
+  // distance from the newest row in the calendar, otherwise binary search the series
+  private int getIndex(long day) {
+    if (!dense) {
+      return series.floorIndex(day);
     }
+    int ordinal = calendar.floorOrdinal(day);
+    int index = newestOrdinal - Math.min(ordinal, newestOrdinal);
+    return ordinal == -1 || index >= series.size() ? -1 : index;
   }
 
-  private String getAPIKey() {
-    String apiKey = null;
-    String path = "apikey.txt";  // Adjust this path as needed
-
-    try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-      apiKey = br.readLine().trim();
-    } catch (IOException e) {
-      System.err.println("Error reading API key file: " + e.getMessage());
-      System.err.println("Please ensure that the file '" + path
-              + "' exists and contains a valid API key.");
-      throw new RuntimeException("Failed to read API key", e);
+  private int getDataIndex(String date) {
+    LocalDate current = LocalDate.now();
+    if (current.isBefore(LocalDate.parse(date))) {
+      throw new IllegalArgumentException("We cannot predict future stock price.");
     }
-
-    if (apiKey == null || apiKey.isEmpty()) {
-      throw new RuntimeException("API key is empty or not found in '" + path + "'");
+    int i = getIndex(date);
+    if (i == -1) {
+      throw new IllegalArgumentException("No data on this date.");
     }
+    return i;
+  }
 
-    return apiKey;
+  /**
+   * Gets the price data backing this stock.
+   * @return the price series
+   */
+  PriceSeries getSeries() {
+    return series;
   }
 
-  private int findIndex(String[] strList, String str) {
-    for (int i = 0; i < strList.length; i++) {
-      if (strList[i].equalsIgnoreCase(str)) {
-        return i;
-      }
-    }
-    return -1;
+  /**
+   * Gets the trading calendar this stock resolves dates with.
+   * @return the trading calendar
+   */
+  TradingCalendar getCalendar() {
+    return calendar;
   }
 }
@@ -0,0 +1,159 @@
+package model.stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary on-disk cache of the price data of a stock, written next to the CSV file it
+ * was parsed from. The file holds a fixed size header followed by fixed width columns,
+ * so it can be memory-mapped and read without parsing.
+ *
+ * <p>Layout (little endian): magic, version, row count, padding, size and last modified
+ * time of the source CSV, then the date column (epoch days as ints, padded to 8 bytes),
+ * the open, high, low and close columns (doubles) and the volume column (longs).
+ */
+class BinaryPriceCache {
+
+  static final int MAGIC = 0x53544B42; // "STKB"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+
+  private BinaryPriceCache() {
+  }
+
+  /**
+   * Gets the path of the cache file for a CSV file.
+   * @param csv path of the CSV file
+   * @return path of the cache file
+   */
+  static Path cachePath(Path csv) {
+    String name = csv.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return csv.resolveSibling((dot == -1 ? name : name.substring(0, dot)) + ".bin");
+  }
+
+  /**
+   * Opens the cache file of a CSV file if it is up to date with the CSV.
+   * @param csv path of the CSV file
+   * @return the mapped price series, or null if there is no valid cache file
+   */
+  static PriceSeries open(Path csv) {
+    Path bin = cachePath(csv);
+    if (!Files.exists(bin)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(bin, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        return null;
+      }
+      int rows = buffer.getInt(8);
+      Stamp stamp = Stamp.of(csv);
+      if (buffer.getLong(16) != stamp.size || buffer.getLong(24) != stamp.modified
+              || channel.size() != fileSize(rows)) {
+        return null;
+      }
+      return new MappedPriceSeries(buffer, rows);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the cache file of a CSV file, replacing any existing one.
+   * @param csv path of the CSV file the columns were read from
+   * @param stamp of the CSV file taken before it was read, so that a CSV file replaced
+   *              while it was being read does not validate the columns of the old one
+   * @param columns price data of the CSV file
+   * @throws IOException if the cache file cannot be written
+   */
+  static void write(Path csv, Stamp stamp, PriceColumns columns) throws IOException {
+    int rows = columns.size;
+    ByteBuffer buffer = ByteBuffer.allocate((int) fileSize(rows)).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(0);
+    buffer.putLong(stamp.size).putLong(stamp.modified);
+    for (int i = 0; i < rows; i++) {
+      buffer.putInt(columns.dates[i]);
+    }
+    buffer.position(closeOffset(rows) - 3 * rows * Double.BYTES);
+    for (double[] column : new double[][] {columns.open, columns.high, columns.low,
+        columns.close}) {
+      for (int i = 0; i < rows; i++) {
+        buffer.putDouble(column[i]);
+      }
+    }
+    for (int i = 0; i < rows; i++) {
+      buffer.putLong(columns.volume[i]);
+    }
+    buffer.flip();
+
+    Path bin = cachePath(csv);
+    Path tmp = Files.createTempFile(bin.toAbsolutePath().getParent(), bin.getFileName() + ".",
+            ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(tmp, bin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Size and last modified time of a CSV file, which a cache file is valid for.
+   */
+  static final class Stamp {
+    private final long size;
+    private final long modified;
+
+    private Stamp(long size, long modified) {
+      this.size = size;
+      this.modified = modified;
+    }
+
+    /**
+     * Reads the stamp of a CSV file as it is now.
+     * @param csv path of the CSV file
+     * @return the stamp
+     * @throws IOException if the file cannot be read
+     */
+    static Stamp of(Path csv) throws IOException {
+      return new Stamp(Files.size(csv), Files.getLastModifiedTime(csv).toMillis());
+    }
+  }
+
+  // the date column is padded so that the double columns are 8 byte aligned
+  static int dateOffset() {
+    return HEADER_SIZE;
+  }
+
+  static int openOffset(int rows) {
+    return HEADER_SIZE + ((rows * Integer.BYTES + 7) & ~7);
+  }
+
+  static int closeOffset(int rows) {
+    return openOffset(rows) + 3 * rows * Double.BYTES;
+  }
+
+  static int volumeOffset(int rows) {
+    return openOffset(rows) + 4 * rows * Double.BYTES;
+  }
+
+  static long fileSize(int rows) {
+    return volumeOffset(rows) + (long) rows * Long.BYTES;
+  }
+}
@@ -0,0 +1,565 @@
+package model.stock;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Implementation of the {@link PriceSeries} interface that keeps its columns compressed
+ * on the heap. Rows are split into blocks of {@link #BLOCK_SIZE} rows and every column
+ * of a block is encoded into its own bit stream, so reading a range of one column only
+ * decodes the blocks of that column within the range.
+ *
+ * <p>Dates are stored as the gap to the previous row, which costs a single bit between
+ * consecutive days and two bits over a weekend. Prices are stored as deltas of scaled
+ * decimals when every price of the block is an exact decimal with at most four
+ * fractional digits, which is the case for quoted prices, and otherwise XOR encoded
+ * against the previous price like in Facebook's Gorilla. Volumes are stored as deltas,
+ * divided by the largest power of ten that every volume of the block is a multiple of.
+ * Deltas are bit-packed at the width most of them fit in, and the few that do not, such
+ * as the jump of a split, are escaped rather than widening the whole block. Every value
+ * is reproduced exactly.
+ *
+ * <p>Daily bars take about 11 bytes a day, against 44 bytes in primitive arrays. Deltas
+ * of deltas do no better than deltas on prices, which move like a random walk, and most
+ * of what is left is the day to day change of the prices and volumes themselves.
+ */
+public final class CompressedPriceSeries implements PriceSeries {
+
+  /**
+   * Number of rows in a block, which is the unit of decoding.
+   */
+  public static final int BLOCK_SIZE = 128;
+
+  private static final int DATE = 0;
+  private static final int OPEN = 1;
+  private static final int HIGH = 2;
+  private static final int LOW = 3;
+  private static final int CLOSE = 4;
+  private static final int VOLUME = 5;
+  private static final int COLUMNS = 6;
+
+  private static final int MAX_SCALE = 4;
+  private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+  private static final double MAX_SCALED = 1L << 52;
+  private static final int MAX_VOLUME_SCALE = 6;
+
+  private final int rows;
+  private final int[] blockDates; // newest date of each block
+  private final long[][] streams; // bit stream of each column
+  private final int[][] offsets; // bit offset of each block within the stream of a column
+
+  // the most recently decoded block of each column, so that scans over consecutive rows
+  // decode each block once; blocks are immutable, so a stale read only costs a decode
+  private final Block[] recent = new Block[COLUMNS];
+
+  /**
+   * Constructs a compressed copy of a series.
+   * @param source the series to compress
+   */
+  public CompressedPriceSeries(PriceSeries source) {
+    this.rows = source.size();
+    int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.blockDates = new int[blocks];
+    this.streams = new long[COLUMNS][];
+    this.offsets = new int[COLUMNS][blocks];
+
+    BitWriter[] writers = new BitWriter[COLUMNS];
+    for (int c = 0; c < COLUMNS; c++) {
+      writers[c] = new BitWriter();
+    }
+    int[] dates = new int[BLOCK_SIZE];
+    double[] prices = new double[BLOCK_SIZE];
+    long[] volumes = new long[BLOCK_SIZE];
+    for (int b = 0; b < blocks; b++) {
+      int start = b * BLOCK_SIZE;
+      int n = Math.min(BLOCK_SIZE, rows - start);
+      for (int c = 0; c < COLUMNS; c++) {
+        offsets[c][b] = writers[c].size();
+      }
+
+      for (int i = 0; i < n; i++) {
+        dates[i] = source.getDate(start + i);
+      }
+      blockDates[b] = dates[0];
+      encodeDates(writers[DATE], dates, n);
+
+      for (int c = OPEN; c <= CLOSE; c++) {
+        for (int i = 0; i < n; i++) {
+          prices[i] = getPrice(source, c, start + i);
+        }
+        encodePrices(writers[c], prices, n);
+      }
+
+      for (int i = 0; i < n; i++) {
+        volumes[i] = source.getVolume(start + i);
+      }
+      encodeVolumes(writers[VOLUME], volumes, n);
+    }
+    for (int c = 0; c < COLUMNS; c++) {
+      streams[c] = writers[c].toArray();
+    }
+  }
+
+  @Override
+  public int size() {
+    return rows;
+  }
+
+  @Override
+  public int getDate(int index) {
+    return block(DATE, index).ints[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public double getOpen(int index) {
+    return block(OPEN, index).doubles[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public double getHigh(int index) {
+    return block(HIGH, index).doubles[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public double getLow(int index) {
+    return block(LOW, index).doubles[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public double getClose(int index) {
+    return block(CLOSE, index).doubles[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public long getVolume(int index) {
+    return block(VOLUME, index).longs[index % BLOCK_SIZE];
+  }
+
+  @Override
+  public IntBuffer dates(int from, int to) {
+    checkRange(from, to);
+    int[] res = new int[to - from];
+    for (int i = from; i < to; ) {
+      Block block = block(DATE, i);
+      int n = Math.min(to - i, block.ints.length - i % BLOCK_SIZE);
+      System.arraycopy(block.ints, i % BLOCK_SIZE, res, i - from, n);
+      i += n;
+    }
+    return IntBuffer.wrap(res).asReadOnlyBuffer();
+  }
+
+  @Override
+  public DoubleBuffer closes(int from, int to) {
+    checkRange(from, to);
+    double[] res = new double[to - from];
+    for (int i = from; i < to; ) {
+      Block block = block(CLOSE, i);
+      int n = Math.min(to - i, block.doubles.length - i % BLOCK_SIZE);
+      System.arraycopy(block.doubles, i % BLOCK_SIZE, res, i - from, n);
+      i += n;
+    }
+    return DoubleBuffer.wrap(res).asReadOnlyBuffer();
+  }
+
+  @Override
+  public int floorIndex(long day) {
+    // the first block starting on or before the day, the row can still be at the end of
+    // the block before it
+    int low = 0;
+    int high = blockDates.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (blockDates[mid] <= day) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    if (low == 0) {
+      return rows == 0 ? -1 : 0;
+    }
+    int[] dates = block(DATE, (low - 1) * BLOCK_SIZE).ints;
+    for (int i = 0; i < dates.length; i++) {
+      if (dates[i] <= day) {
+        return (low - 1) * BLOCK_SIZE + i;
+      }
+    }
+    return low == blockDates.length ? -1 : low * BLOCK_SIZE;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    // object headers, the block index and the streams, plus one decoded block per column
+    long res = 64L + 16L + (long) blockDates.length * Integer.BYTES;
+    for (int c = 0; c < COLUMNS; c++) {
+      res += 16L + (long) streams[c].length * Long.BYTES;
+      res += 16L + (long) offsets[c].length * Integer.BYTES;
+      res += 40L + (long) Math.min(rows, BLOCK_SIZE) * (c == DATE ? Integer.BYTES
+              : Double.BYTES);
+    }
+    return res;
+  }
+
+  private Block block(int column, int index) {
+    if (index < 0 || index >= rows) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length "
+              + rows);
+    }
+    int b = index / BLOCK_SIZE;
+    Block block = recent[column];
+    if (block == null || block.index != b) {
+      block = decode(column, b);
+      recent[column] = block;
+    }
+    return block;
+  }
+
+  private Block decode(int column, int b) {
+    int n = Math.min(BLOCK_SIZE, rows - b * BLOCK_SIZE);
+    BitReader reader = new BitReader(streams[column], offsets[column][b]);
+    switch (column) {
+      case DATE:
+        return new Block(b, decodeDates(reader, n), null, null);
+      case VOLUME:
+        return new Block(b, null, null, decodeVolumes(reader, n));
+      default:
+        return new Block(b, null, decodePrices(reader, n), null);
+    }
+  }
+
+  private static double getPrice(PriceSeries source, int column, int index) {
+    switch (column) {
+      case OPEN:
+        return source.getOpen(index);
+      case HIGH:
+        return source.getHigh(index);
+      case LOW:
+        return source.getLow(index);
+      default:
+        return source.getClose(index);
+    }
+  }
+
+  // dates: the first date, then the gap to each older date as one bit for the next day,
+  // two bits for a weekend, six bits for another gap of up to a week and the date itself
+  // otherwise
+  private static void encodeDates(BitWriter writer, int[] dates, int n) {
+    writer.write(dates[0], 32);
+    for (int i = 1; i < n; i++) {
+      long gap = (long) dates[i - 1] - dates[i];
+      if (gap == 1) {
+        writer.write(0, 1);
+      } else if (gap == 3) {
+        writer.write(0b10, 2);
+      } else if (gap >= 0 && gap < (1 << 3)) {
+        writer.write(0b110, 3);
+        writer.write(gap, 3);
+      } else {
+        writer.write(0b111, 3);
+        writer.write(dates[i], 32);
+      }
+    }
+  }
+
+  private static int[] decodeDates(BitReader reader, int n) {
+    int[] dates = new int[n];
+    dates[0] = (int) reader.read(32);
+    for (int i = 1; i < n; i++) {
+      if (reader.read(1) == 0) {
+        dates[i] = dates[i - 1] - 1;
+      } else if (reader.read(1) == 0) {
+        dates[i] = dates[i - 1] - 3;
+      } else if (reader.read(1) == 0) {
+        dates[i] = dates[i - 1] - (int) reader.read(3);
+      } else {
+        dates[i] = (int) reader.read(32);
+      }
+    }
+    return dates;
+  }
+
+  // prices: a flag for the encoding of the block, then either the scale and the packed
+  // deltas of the scaled prices, or the XOR encoded prices
+  private static void encodePrices(BitWriter writer, double[] prices, int n) {
+    int scale = findScale(prices, n);
+    if (scale != -1) {
+      writer.write(1, 1);
+      writer.write(scale, 3);
+      long[] scaled = new long[n];
+      for (int i = 0; i < n; i++) {
+        scaled[i] = Math.round(prices[i] * POWERS_OF_TEN[scale]);
+      }
+      encodeLongs(writer, scaled, n);
+      return;
+    }
+
+    writer.write(0, 1);
+    long prev = Double.doubleToRawLongBits(prices[0]);
+    writer.write(prev, 64);
+    int prevLeading = -1;
+    int prevTrailing = 0;
+    for (int i = 1; i < n; i++) {
+      long bits = Double.doubleToRawLongBits(prices[i]);
+      long xor = bits ^ prev;
+      prev = bits;
+      if (xor == 0) {
+        writer.write(0, 1);
+        continue;
+      }
+      int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trailing = Long.numberOfTrailingZeros(xor);
+      if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+        // the meaningful bits fit in the window of the previous value
+        writer.write(0b10, 2);
+        writer.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+      } else {
+        int meaningful = 64 - leading - trailing;
+        writer.write(0b11, 2);
+        writer.write(leading, 5);
+        writer.write(meaningful - 1, 6);
+        writer.write(xor >>> trailing, meaningful);
+        prevLeading = leading;
+        prevTrailing = trailing;
+      }
+    }
+  }
+
+  private static double[] decodePrices(BitReader reader, int n) {
+    double[] prices = new double[n];
+    if (reader.read(1) != 0) {
+      double power = POWERS_OF_TEN[(int) reader.read(3)];
+      long[] scaled = decodeLongs(reader, n);
+      for (int i = 0; i < n; i++) {
+        prices[i] = scaled[i] / power;
+      }
+      return prices;
+    }
+
+    long prev = reader.read(64);
+    prices[0] = Double.longBitsToDouble(prev);
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < n; i++) {
+      if (reader.read(1) != 0) {
+        if (reader.read(1) != 0) {
+          leading = (int) reader.read(5);
+          trailing = 64 - leading - ((int) reader.read(6) + 1);
+        }
+        prev ^= reader.read(64 - leading - trailing) << trailing;
+      }
+      prices[i] = Double.longBitsToDouble(prev);
+    }
+    return prices;
+  }
+
+  // the smallest number of fractional digits that every price of the block is exact
+  // with, or -1 if there is none
+  private static int findScale(double[] prices, int n) {
+    for (int scale = 0; scale <= MAX_SCALE; scale++) {
+      double power = POWERS_OF_TEN[scale];
+      boolean exact = true;
+      for (int i = 0; i < n && exact; i++) {
+        double scaled = prices[i] * power;
+        exact = Math.abs(scaled) < MAX_SCALED && Double.doubleToRawLongBits(
+                Math.round(scaled) / power) == Double.doubleToRawLongBits(prices[i]);
+      }
+      if (exact) {
+        return scale;
+      }
+    }
+    return -1;
+  }
+
+  // volumes: the largest power of ten that every volume is a multiple of, then the
+  // volumes divided by it, which drops the zeros of volumes reported in round lots
+  private static void encodeVolumes(BitWriter writer, long[] volumes, int n) {
+    int scale = 0;
+    long power = 1;
+    while (scale < MAX_VOLUME_SCALE && isMultiple(volumes, n, power * 10)) {
+      scale++;
+      power *= 10;
+    }
+    writer.write(scale, 3);
+    long[] scaled = new long[n];
+    for (int i = 0; i < n; i++) {
+      scaled[i] = volumes[i] / power;
+    }
+    encodeLongs(writer, scaled, n);
+  }
+
+  private static long[] decodeVolumes(BitReader reader, int n) {
+    long power = 1;
+    for (int scale = (int) reader.read(3); scale > 0; scale--) {
+      power *= 10;
+    }
+    long[] volumes = decodeLongs(reader, n);
+    for (int i = 0; i < n; i++) {
+      volumes[i] *= power;
+    }
+    return volumes;
+  }
+
+  private static boolean isMultiple(long[] values, int n, long divisor) {
+    for (int i = 0; i < n; i++) {
+      if (values[i] % divisor != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // longs: the first value, the width of the widest zigzag encoded delta and the width
+  // the deltas are packed at, then the deltas; a delta that does not fit in the packed
+  // width is written as all ones at that width followed by the delta at the widest width
+  private static void encodeLongs(BitWriter writer, long[] values, int n) {
+    writer.write(values[0], 64);
+    long[] deltas = new long[n];
+    long widest = 0;
+    for (int i = 1; i < n; i++) {
+      deltas[i] = zigzag(values[i] - values[i - 1]);
+      widest |= deltas[i];
+    }
+    int wide = 64 - Long.numberOfLeadingZeros(widest);
+    int width = packedWidth(deltas, n, wide);
+    writer.write(wide, 7);
+    writer.write(width, 7);
+    long escape = width < wide ? (1L << width) - 1 : -1;
+    for (int i = 1; i < n; i++) {
+      if (width < wide && Long.compareUnsigned(deltas[i], escape) >= 0) {
+        writer.write(escape, width);
+        writer.write(deltas[i], wide);
+      } else {
+        writer.write(deltas[i], width);
+      }
+    }
+  }
+
+  private static long[] decodeLongs(BitReader reader, int n) {
+    long[] values = new long[n];
+    values[0] = reader.read(64);
+    int wide = (int) reader.read(7);
+    int width = (int) reader.read(7);
+    long escape = width < wide ? (1L << width) - 1 : -1;
+    for (int i = 1; i < n; i++) {
+      long delta = reader.read(width);
+      if (width < wide && delta == escape) {
+        delta = reader.read(wide);
+      }
+      values[i] = values[i - 1] + unzigzag(delta);
+    }
+    return values;
+  }
+
+  // the width that packs the deltas after the first in the fewest bits, counting the
+  // escaped ones at both widths
+  private static int packedWidth(long[] deltas, int n, int wide) {
+    int best = wide;
+    long bestBits = (long) (n - 1) * wide;
+    for (int width = 0; width < wide; width++) {
+      long escape = (1L << width) - 1;
+      long bits = (long) (n - 1) * width;
+      for (int i = 1; i < n && bits < bestBits; i++) {
+        if (Long.compareUnsigned(deltas[i], escape) >= 0) {
+          bits += wide;
+        }
+      }
+      if (bits < bestBits) {
+        best = width;
+        bestBits = bits;
+      }
+    }
+    return best;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * A decoded block of one column.
+   */
+  private static final class Block {
+    private final int index;
+    private final int[] ints;
+    private final double[] doubles;
+    private final long[] longs;
+
+    private Block(int index, int[] ints, double[] doubles, long[] longs) {
+      this.index = index;
+      this.ints = ints;
+      this.doubles = doubles;
+      this.longs = longs;
+    }
+  }
+
+  /**
+   * Growable stream of bits, written from the most significant bit of each word.
+   */
+  private static final class BitWriter {
+    private long[] words = new long[16];
+    private int bits;
+
+    int size() {
+      return bits;
+    }
+
+    // writes the lowest n bits of the value
+    void write(long value, int n) {
+      if (n == 0) {
+        return;
+      }
+      if (bits + n > (long) words.length * Long.SIZE) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+      if (n < Long.SIZE) {
+        value &= (1L << n) - 1;
+      }
+      int word = bits >>> 6;
+      int free = Long.SIZE - (bits & 63);
+      if (n <= free) {
+        words[word] |= value << (free - n);
+      } else {
+        words[word] |= value >>> (n - free);
+        words[word + 1] |= value << (Long.SIZE - (n - free));
+      }
+      bits += n;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(words, (bits + 63) >>> 6);
+    }
+  }
+
+  /**
+   * Reader over a stream of bits written by a {@link BitWriter}.
+   */
+  private static final class BitReader {
+    private final long[] words;
+    private int position;
+
+    private BitReader(long[] words, int position) {
+      this.words = words;
+      this.position = position;
+    }
+
+    long read(int n) {
+      if (n == 0) {
+        return 0;
+      }
+      int word = position >>> 6;
+      int used = position & 63;
+      int available = Long.SIZE - used;
+      position += n;
+      if (n <= available) {
+        return (words[word] << used) >>> (Long.SIZE - n);
+      }
+      long high = (words[word] << used) >>> used;
+      return (high << (n - available)) | (words[word + 1] >>> (Long.SIZE - (n - available)));
+    }
+  }
+}
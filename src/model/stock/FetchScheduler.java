@@ -0,0 +1,208 @@
+package model.stock;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules requests to the Alpha Vantage API so that the program stays within the API's
+ * request quota. Requests wait in a queue and are sent under a token-bucket rate limit,
+ * requests for portfolio holdings are sent before ad-hoc lookups, and concurrent
+ * requests for the same data share a single download.
+ */
+public class FetchScheduler {
+
+  /**
+   * System property for the number of API requests allowed per minute.
+   */
+  public static final String RATE_PROPERTY = "stocks.api.requestsPerMinute";
+
+  /**
+   * How urgent a request is. Requests with a higher priority are sent first.
+   */
+  public enum Priority {
+    /**
+     * Data for stocks held in a portfolio.
+     */
+    HOLDING,
+    /**
+     * Data for a stock the user is looking up.
+     */
+    LOOKUP
+  }
+
+  private final AlphaVantageClient client;
+  private final double tokensPerNano;
+  private final double capacity;
+  private final PriorityBlockingQueue<Request> queue = new PriorityBlockingQueue<>();
+  private final Map<String, Request> requests = new HashMap<>(); // guarded by this
+  private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "api-fetch");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private Thread dispatcher; // guarded by this
+  private long sequence; // guarded by this
+
+  private double tokens; // guarded by bucket lock
+  private long refilled; // guarded by bucket lock
+  private final Object bucket = new Object();
+
+  /**
+   * Constructs a scheduler that allows the number of requests per minute given by the
+   * {@value #RATE_PROPERTY} system property, 5 by default.
+   *
+   * @param client to send the requests with
+   */
+  public FetchScheduler(AlphaVantageClient client) {
+    this(client, Integer.getInteger(RATE_PROPERTY, 5), Integer.getInteger(RATE_PROPERTY, 5));
+  }
+
+  /**
+   * Constructs a scheduler with a rate limit.
+   *
+   * @param client to send the requests with
+   * @param requestsPerMinute number of requests sent per minute on average
+   * @param burst number of requests that can be sent at once after being idle
+   */
+  public FetchScheduler(AlphaVantageClient client, int requestsPerMinute, int burst) {
+    if (requestsPerMinute <= 0 || burst <= 0) {
+      throw new IllegalArgumentException("The rate limit must be positive.");
+    }
+    this.client = client;
+    this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+    this.capacity = burst;
+    this.tokens = burst;
+    this.refilled = System.nanoTime();
+  }
+
+  /**
+   * Queues a request for the daily prices of a stock. If the same data is already
+   * queued or being downloaded, the existing request is shared instead, raising its
+   * priority if needed.
+   *
+   * @param ticker of the stock
+   * @param full true for the full history, false for only the latest 100 days
+   * @param target file to save the response to, or null to not save it
+   * @param priority of the request
+   * @return a future completing with the CSV response of the API, which is shared by
+   *         every caller of the request and must not be modified, or failing with an
+   *         {@link IllegalArgumentException} if the API has no data for the ticker
+   */
+  public synchronized CompletableFuture<ByteBuffer> fetch(String ticker, boolean full,
+                                                          Path target, Priority priority) {
+    String key = ticker.toUpperCase() + (full ? ":full" : ":compact");
+    Request request = requests.get(key);
+    if (request != null) {
+      if (priority.compareTo(request.priority) < 0 && queue.remove(request)) {
+        request.priority = priority;
+        queue.add(request);
+      }
+      return request.result;
+    }
+
+    request = new Request(key, ticker, full, target, priority, sequence++);
+    requests.put(key, request);
+    queue.add(request);
+    if (dispatcher == null) {
+      dispatcher = new Thread(this::dispatch, "api-dispatcher");
+      dispatcher.setDaemon(true);
+      dispatcher.start();
+    }
+    return request.result;
+  }
+
+  /**
+   * Gets the number of requests waiting to be sent.
+   *
+   * @return the number of queued requests
+   */
+  public int getQueued() {
+    return queue.size();
+  }
+
+  private void dispatch() {
+    try {
+      while (true) {
+        // wait for work, then for a token, and only then pick the most urgent request
+        // so that requests queued in the meantime can still jump ahead
+        queue.add(queue.take());
+        acquireToken();
+        Request request = queue.poll();
+        if (request != null) {
+          workers.execute(() -> send(request));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void send(Request request) {
+    ByteBuffer response = null;
+    RuntimeException error = null;
+    try {
+      response = client.download(request.ticker, request.full, request.target);
+    } catch (RuntimeException e) {
+      error = e;
+    }
+    // stop sharing the request before completing it, so that callers that see it
+    // completed and ask again start a new download
+    synchronized (this) {
+      requests.remove(request.key);
+    }
+    if (error != null) {
+      request.result.completeExceptionally(error);
+    } else {
+      request.result.complete(response);
+    }
+  }
+
+  private void acquireToken() throws InterruptedException {
+    synchronized (bucket) {
+      while (true) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilled) * tokensPerNano);
+        refilled = now;
+        if (tokens >= 1) {
+          tokens -= 1;
+          return;
+        }
+        long wait = (long) Math.ceil((1 - tokens) / tokensPerNano);
+        TimeUnit.NANOSECONDS.timedWait(bucket, wait);
+      }
+    }
+  }
+
+  private static class Request implements Comparable<Request> {
+    private final String key;
+    private final String ticker;
+    private final boolean full;
+    private final Path target;
+    private final long sequence;
+    private final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+    private Priority priority;
+
+    Request(String key, String ticker, boolean full, Path target, Priority priority,
+            long sequence) {
+      this.key = key;
+      this.ticker = ticker;
+      this.full = full;
+      this.target = target;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Request o) {
+      int res = priority.compareTo(o.priority);
+      return res != 0 ? res : Long.compare(sequence, o.sequence);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package model.stock;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Implementation of the {@link PriceSeries} interface that reads its columns directly
+ * from a memory-mapped {@link BinaryPriceCache} file. The data stays in the operating
+ * system's page cache instead of the heap, so it is shared by every process that maps
+ * the same file.
+ */
+class MappedPriceSeries implements PriceSeries {
+
+  private final ByteBuffer buffer;
+  private final int rows;
+  private final int openOffset;
+  private final int closeOffset;
+  private final int volumeOffset;
+
+  /**
+   * Constructs a series over a mapped cache file.
+   * @param buffer the mapped file, in little endian order
+   * @param rows number of rows in the file
+   */
+  MappedPriceSeries(ByteBuffer buffer, int rows) {
+    this.buffer = buffer;
+    this.rows = rows;
+    this.openOffset = BinaryPriceCache.openOffset(rows);
+    this.closeOffset = BinaryPriceCache.closeOffset(rows);
+    this.volumeOffset = BinaryPriceCache.volumeOffset(rows);
+  }
+
+  @Override
+  public int size() {
+    return rows;
+  }
+
+  @Override
+  public int getDate(int index) {
+    return buffer.getInt(BinaryPriceCache.dateOffset() + checkIndex(index) * Integer.BYTES);
+  }
+
+  @Override
+  public double getOpen(int index) {
+    return buffer.getDouble(openOffset + checkIndex(index) * Double.BYTES);
+  }
+
+  @Override
+  public double getHigh(int index) {
+    return buffer.getDouble(openOffset + (rows + checkIndex(index)) * Double.BYTES);
+  }
+
+  @Override
+  public double getLow(int index) {
+    return buffer.getDouble(openOffset + (2 * rows + checkIndex(index)) * Double.BYTES);
+  }
+
+  @Override
+  public double getClose(int index) {
+    return buffer.getDouble(closeOffset + checkIndex(index) * Double.BYTES);
+  }
+
+  @Override
+  public long getVolume(int index) {
+    return buffer.getLong(volumeOffset + checkIndex(index) * Long.BYTES);
+  }
+
+  @Override
+  public IntBuffer dates(int from, int to) {
+    checkRange(from, to);
+    return buffer.slice(BinaryPriceCache.dateOffset() + from * Integer.BYTES,
+            (to - from) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+            .asReadOnlyBuffer();
+  }
+
+  @Override
+  public DoubleBuffer closes(int from, int to) {
+    checkRange(from, to);
+    return buffer.slice(closeOffset + from * Double.BYTES, (to - from) * Double.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return buffer.capacity();
+  }
+
+  @Override
+  public boolean isOnHeap() {
+    return false;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= rows) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length "
+              + rows);
+    }
+    return index;
+  }
+}
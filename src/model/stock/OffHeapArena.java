@@ -0,0 +1,111 @@
+package model.stock;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator of memory outside of the Java heap for price data, which keeps track of how
+ * much of that memory is in use. Memory is handed out as direct buffers and is given
+ * back either explicitly, when its owner is released, or when its owner is no longer
+ * reachable.
+ *
+ * <p>The arena counts accounted bytes. Memory given back explicitly leaves the count at
+ * once, but the direct buffer holding it is only freed when the JVM collects it, because
+ * views of the buffer handed out before may still be reachable and freeing it under them
+ * would not be safe. The native memory of the process can therefore be larger than the
+ * count for a while.
+ */
+public final class OffHeapArena {
+
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong allocations = new AtomicLong();
+
+  /**
+   * Allocates a zeroed direct buffer in little endian order on behalf of an owner.
+   *
+   * @param owner the object the memory belongs to
+   * @param size of the buffer in bytes
+   * @return the allocation, holding the buffer
+   * @throws IllegalArgumentException if the size is negative
+   */
+  Allocation allocate(Object owner, int size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("The size of an allocation cannot be negative.");
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    bytes.addAndGet(size);
+    allocations.incrementAndGet();
+    Allocation allocation = new Allocation(buffer);
+    // the cleaning action must not refer to the owner, otherwise it never becomes
+    // unreachable
+    allocation.cleanable = CLEANER.register(owner, new Free(this, size));
+    return allocation;
+  }
+
+  /**
+   * Gets the number of bytes allocated by this arena that have not been given back.
+   *
+   * @return the accounted bytes
+   */
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Gets the number of allocations of this arena that have not been freed.
+   *
+   * @return the live allocations
+   */
+  public long getAllocations() {
+    return allocations.get();
+  }
+
+  /**
+   * Memory allocated by an {@link OffHeapArena}.
+   */
+  static final class Allocation {
+    private final ByteBuffer buffer;
+    private Cleaner.Cleanable cleanable;
+
+    private Allocation(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Gets the memory of the allocation.
+     * @return the direct buffer
+     */
+    ByteBuffer getBuffer() {
+      return buffer;
+    }
+
+    /**
+     * Gives the memory back to the arena. Freeing an allocation more than once has no
+     * effect.
+     */
+    void free() {
+      cleanable.clean();
+    }
+  }
+
+  private static final class Free implements Runnable {
+    private final OffHeapArena arena;
+    private final int size;
+
+    private Free(OffHeapArena arena, int size) {
+      this.arena = arena;
+      this.size = size;
+    }
+
+    // runs at most once, whether it is run explicitly or by the cleaner
+    @Override
+    public void run() {
+      arena.bytes.addAndGet(-size);
+      arena.allocations.decrementAndGet();
+    }
+  }
+}
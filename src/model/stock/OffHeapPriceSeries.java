@@ -0,0 +1,162 @@
+package model.stock;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Implementation of the {@link PriceSeries} interface that keeps its columns in memory
+ * allocated outside of the Java heap by an {@link OffHeapArena}, so that the price data
+ * adds nothing for the garbage collector to trace or copy. The columns are laid out like
+ * in a {@link BinaryPriceCache} file.
+ *
+ * <p>The memory can be given back with {@link #release()} as soon as the series is no
+ * longer needed, after which reading the series fails. A series that is never released
+ * gives its memory back once it is no longer reachable.
+ */
+public final class OffHeapPriceSeries implements PriceSeries {
+
+  private final int rows;
+  private final int openOffset;
+  private final int closeOffset;
+  private final int volumeOffset;
+  private final long size;
+  private volatile OffHeapArena.Allocation allocation; // null once released
+
+  private OffHeapPriceSeries(PriceSeries source, OffHeapArena arena) {
+    this.rows = source.size();
+    this.openOffset = BinaryPriceCache.openOffset(rows);
+    this.closeOffset = BinaryPriceCache.closeOffset(rows);
+    this.volumeOffset = BinaryPriceCache.volumeOffset(rows);
+    this.size = BinaryPriceCache.fileSize(rows);
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The series is too large to be kept off the heap.");
+    }
+
+    OffHeapArena.Allocation allocation = arena.allocate(this, (int) size);
+    ByteBuffer buffer = allocation.getBuffer();
+    for (int i = 0; i < rows; i++) {
+      buffer.putInt(BinaryPriceCache.dateOffset() + i * Integer.BYTES, source.getDate(i));
+      buffer.putDouble(openOffset + i * Double.BYTES, source.getOpen(i));
+      buffer.putDouble(openOffset + (rows + i) * Double.BYTES, source.getHigh(i));
+      buffer.putDouble(openOffset + (2 * rows + i) * Double.BYTES, source.getLow(i));
+      buffer.putDouble(closeOffset + i * Double.BYTES, source.getClose(i));
+      buffer.putLong(volumeOffset + i * Long.BYTES, source.getVolume(i));
+    }
+    this.allocation = allocation;
+  }
+
+  /**
+   * Copies a series into memory allocated by an arena.
+   *
+   * @param source the series to copy
+   * @param arena to allocate the memory from
+   * @return the copy of the series
+   * @throws IllegalArgumentException if the series is too large to be copied
+   */
+  public static OffHeapPriceSeries copyOf(PriceSeries source, OffHeapArena arena)
+          throws IllegalArgumentException {
+    return new OffHeapPriceSeries(source, arena);
+  }
+
+  /**
+   * Gives the memory of the series back to its arena, which stops accounting for it at
+   * once. The buffer itself is freed when the JVM collects it, since views returned by
+   * {@link #dates(int, int)} and {@link #closes(int, int)} may still refer to it. Reading
+   * the series afterwards throws an {@link IllegalStateException}, releasing it again has
+   * no effect.
+   */
+  public void release() {
+    OffHeapArena.Allocation released = allocation;
+    allocation = null;
+    if (released != null) {
+      released.free();
+    }
+  }
+
+  /**
+   * Checks if the memory of the series has been given back.
+   *
+   * @return true if the series has been released, false otherwise
+   */
+  public boolean isReleased() {
+    return allocation == null;
+  }
+
+  @Override
+  public int size() {
+    return rows;
+  }
+
+  @Override
+  public int getDate(int index) {
+    return buffer().getInt(BinaryPriceCache.dateOffset() + checkIndex(index) * Integer.BYTES);
+  }
+
+  @Override
+  public double getOpen(int index) {
+    return buffer().getDouble(openOffset + checkIndex(index) * Double.BYTES);
+  }
+
+  @Override
+  public double getHigh(int index) {
+    return buffer().getDouble(openOffset + (rows + checkIndex(index)) * Double.BYTES);
+  }
+
+  @Override
+  public double getLow(int index) {
+    return buffer().getDouble(openOffset + (2 * rows + checkIndex(index)) * Double.BYTES);
+  }
+
+  @Override
+  public double getClose(int index) {
+    return buffer().getDouble(closeOffset + checkIndex(index) * Double.BYTES);
+  }
+
+  @Override
+  public long getVolume(int index) {
+    return buffer().getLong(volumeOffset + checkIndex(index) * Long.BYTES);
+  }
+
+  @Override
+  public IntBuffer dates(int from, int to) {
+    checkRange(from, to);
+    return buffer().slice(BinaryPriceCache.dateOffset() + from * Integer.BYTES,
+            (to - from) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+            .asReadOnlyBuffer();
+  }
+
+  @Override
+  public DoubleBuffer closes(int from, int to) {
+    checkRange(from, to);
+    return buffer().slice(closeOffset + from * Double.BYTES, (to - from) * Double.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return size;
+  }
+
+  @Override
+  public boolean isOnHeap() {
+    return false;
+  }
+
+  private ByteBuffer buffer() {
+    OffHeapArena.Allocation current = allocation;
+    if (current == null) {
+      throw new IllegalStateException("The price data has been released.");
+    }
+    return current.getBuffer();
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= rows) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length "
+              + rows);
+    }
+    return index;
+  }
+}
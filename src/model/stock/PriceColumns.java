@@ -0,0 +1,68 @@
+package model.stock;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive columns that price data is collected into while it is being read,
+ * before it is turned into a {@link PriceSeries}.
+ */
+class PriceColumns {
+
+  int[] dates;
+  double[] open;
+  double[] high;
+  double[] low;
+  double[] close;
+  long[] volume;
+  int size;
+
+  /**
+   * Constructs empty columns.
+   * @param capacity initial number of rows
+   */
+  PriceColumns(int capacity) {
+    capacity = Math.max(capacity, 16);
+    dates = new int[capacity];
+    open = new double[capacity];
+    high = new double[capacity];
+    low = new double[capacity];
+    close = new double[capacity];
+    volume = new long[capacity];
+  }
+
+  /**
+   * Appends a row to the columns.
+   */
+  void add(int date, double o, double h, double l, double c, long v) {
+    if (size == dates.length) {
+      grow(size * 2);
+    }
+    dates[size] = date;
+    open[size] = o;
+    high[size] = h;
+    low[size] = l;
+    close[size] = c;
+    volume[size] = v;
+    size++;
+  }
+
+  /**
+   * Shrinks the columns so that their length is the number of rows.
+   * @return these columns
+   */
+  PriceColumns trim() {
+    if (size != dates.length) {
+      grow(size);
+    }
+    return this;
+  }
+
+  private void grow(int capacity) {
+    dates = Arrays.copyOf(dates, capacity);
+    open = Arrays.copyOf(open, capacity);
+    high = Arrays.copyOf(high, capacity);
+    low = Arrays.copyOf(low, capacity);
+    close = Arrays.copyOf(close, capacity);
+    volume = Arrays.copyOf(volume, capacity);
+  }
+}
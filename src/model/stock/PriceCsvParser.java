@@ -0,0 +1,306 @@
+package model.stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Parser for price CSV files in the Alpha Vantage format
+ * ({@code timestamp,open,high,low,close,volume}). The parser scans the raw bytes of the
+ * file, decoding ISO dates straight to epoch days and decimals straight to doubles and
+ * writing them into primitive columns, so no objects are allocated per row.
+ */
+public class PriceCsvParser {
+
+  private static final int SKIP = 0;
+  private static final int DATE = 1;
+  private static final int OPEN = 2;
+  private static final int HIGH = 3;
+  private static final int LOW = 4;
+  private static final int CLOSE = 5;
+  private static final int VOLUME = 6;
+
+  private static final double[] POWERS_OF_TEN = new double[23];
+  private static final long DAYS_0000_TO_1970 = 719528;
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final byte[] buf;
+  private final int limit;
+  private int pos;
+  private int line;
+
+  private PriceCsvParser(byte[] buf, int offset, int limit) {
+    this.buf = buf;
+    this.pos = offset;
+    this.limit = limit;
+    this.line = 1;
+  }
+
+  /**
+   * Parses a price CSV file.
+   *
+   * @param csv path of the CSV file
+   * @return the price series in the file
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the file is not a properly formatted price file
+   */
+  public static PriceSeries parse(Path csv) throws IOException {
+    PriceColumns columns = parseColumns(csv);
+    return new ArrayPriceSeries(columns);
+  }
+
+  /**
+   * Parses a price CSV file into columns.
+   *
+   * @param csv path of the CSV file
+   * @return the columns in the file
+   * @throws IOException if the file cannot be read
+   */
+  static PriceColumns parseColumns(Path csv) throws IOException {
+    byte[] contents = Files.readAllBytes(csv);
+    return new PriceCsvParser(contents, 0, contents.length).parseAll();
+  }
+
+  /**
+   * Parses the bytes of a price CSV file, from the buffer's position to its limit, into
+   * columns.
+   *
+   * @param bytes contents of the CSV file
+   * @return the columns in the file
+   * @throws IllegalArgumentException if the contents are not a properly formatted price file
+   */
+  static PriceColumns parse(ByteBuffer bytes) {
+    if (bytes.hasArray()) {
+      return new PriceCsvParser(bytes.array(), bytes.arrayOffset() + bytes.position(),
+              bytes.arrayOffset() + bytes.limit()).parseAll();
+    }
+    // scanning a heap array is much faster than reading a direct buffer byte by byte,
+    // so copy the contents over in one bulk transfer
+    byte[] copy = new byte[bytes.remaining()];
+    bytes.duplicate().get(copy);
+    return new PriceCsvParser(copy, 0, copy.length).parseAll();
+  }
+
+  private PriceColumns parseAll() {
+    int[] roles = parseHeader();
+    // rows are about 50 bytes long, so estimate the capacity from the size of the file
+    PriceColumns columns = new PriceColumns((limit - pos) / 48 + 1);
+
+    while (pos < limit) {
+      line++;
+      byte b = buf[pos];
+      if (b == '\n' || b == '\r') {
+        pos++;
+        continue;
+      }
+      int date = 0;
+      double open = Double.NaN;
+      double high = Double.NaN;
+      double low = Double.NaN;
+      double close = Double.NaN;
+      long volume = 0;
+
+      for (int column = 0; column < roles.length; column++) {
+        int role = roles[column];
+        switch (role) {
+          case DATE:
+            date = parseDate();
+            break;
+          case OPEN:
+            open = parseDecimal();
+            break;
+          case HIGH:
+            high = parseDecimal();
+            break;
+          case LOW:
+            low = parseDecimal();
+            break;
+          case CLOSE:
+            close = parseDecimal();
+            break;
+          case VOLUME:
+            volume = (long) parseDecimal();
+            break;
+          default:
+            skipField();
+            break;
+        }
+        if (column < roles.length - 1) {
+          expect(',');
+        }
+      }
+      skipLine();
+      columns.add(date, open, high, low, close, volume);
+    }
+    return columns.trim();
+  }
+
+  private int[] parseHeader() {
+    int start = pos;
+    skipLine();
+    String header = new String(buf, start, pos - start, StandardCharsets.US_ASCII).trim();
+    String[] names = header.split(",");
+    int[] roles = new int[names.length];
+    boolean hasDate = false;
+    boolean hasClose = false;
+    for (int i = 0; i < names.length; i++) {
+      switch (names[i].trim().toLowerCase()) {
+        case "timestamp":
+          roles[i] = DATE;
+          hasDate = true;
+          break;
+        case "open":
+          roles[i] = OPEN;
+          break;
+        case "high":
+          roles[i] = HIGH;
+          break;
+        case "low":
+          roles[i] = LOW;
+          break;
+        case "close":
+          roles[i] = CLOSE;
+          hasClose = true;
+          break;
+        case "volume":
+          roles[i] = VOLUME;
+          break;
+        default:
+          roles[i] = SKIP;
+          break;
+      }
+    }
+    if (!hasDate || !hasClose) {
+      throw new IllegalArgumentException("The price data must have a timestamp and a close "
+              + "column.");
+    }
+    return roles;
+  }
+
+  // parses a yyyy-MM-dd date into an epoch day, using the same arithmetic as
+  // LocalDate.toEpochDay
+  private int parseDate() {
+    long year = parseDigits(4);
+    expect('-');
+    int month = (int) parseDigits(2);
+    expect('-');
+    int day = (int) parseDigits(2);
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      throw error("Invalid date");
+    }
+
+    long total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+      if (!leap) {
+        total--;
+      }
+    }
+    return (int) (total - DAYS_0000_TO_1970);
+  }
+
+  private long parseDigits(int count) {
+    long value = 0;
+    for (int i = 0; i < count; i++) {
+      int digit = pos < limit ? buf[pos] - '0' : -1;
+      if (digit < 0 || digit > 9) {
+        throw error("Expected a digit");
+      }
+      value = value * 10 + digit;
+      pos++;
+    }
+    return value;
+  }
+
+  // parses a plain decimal number; anything unusual (exponents, more digits than fit
+  // exactly in a double) falls back to Double.parseDouble
+  private double parseDecimal() {
+    int start = pos;
+    boolean negative = false;
+    if (pos < limit && (buf[pos] == '-' || buf[pos] == '+')) {
+      negative = buf[pos] == '-';
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fraction = -1;
+    while (pos < limit) {
+      byte b = buf[pos];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (fraction >= 0) {
+          fraction++;
+        }
+      } else if (b == '.' && fraction < 0) {
+        fraction = 0;
+      } else {
+        break;
+      }
+      pos++;
+    }
+    if (digits == 0) {
+      throw error("Expected a number");
+    }
+    if (pos < limit && !isDelimiter(buf[pos])) {
+      return parseSlow(start);
+    }
+    if (digits > 15 || fraction >= POWERS_OF_TEN.length) {
+      return parseSlow(start);
+    }
+    double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private double parseSlow(int start) {
+    pos = start;
+    skipField();
+    String field = new String(buf, start, pos - start, StandardCharsets.US_ASCII).trim();
+    try {
+      return Double.parseDouble(field);
+    } catch (NumberFormatException e) {
+      throw error("Invalid number '" + field + "'");
+    }
+  }
+
+  private void skipField() {
+    while (pos < limit && !isDelimiter(buf[pos])) {
+      pos++;
+    }
+  }
+
+  private void skipLine() {
+    while (pos < limit && buf[pos] != '\n') {
+      pos++;
+    }
+    if (pos < limit) {
+      pos++;
+    }
+  }
+
+  private void expect(char c) {
+    if (pos >= limit || buf[pos] != c) {
+      throw error("Expected '" + c + "'");
+    }
+    pos++;
+  }
+
+  private static boolean isDelimiter(byte b) {
+    return b == ',' || b == '\n' || b == '\r';
+  }
+
+  private NumberFormatException error(String msg) {
+    return new NumberFormatException(msg + " on line " + line + ".");
+  }
+}
@@ -0,0 +1,256 @@
+package model.stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads the price data of a stock from the data directory, pulling it from the Alpha
+ * Vantage API first if there is no local file for the ticker. Parsed CSV files are
+ * cached in the {@link BinaryPriceCache} format, so later loads map the binary file
+ * instead of parsing the CSV again.
+ */
+class PriceDataLoader {
+
+  private final String ticker;
+  private final String name; // the ticker as it was asked for
+  private final String path;
+  private final FetchScheduler scheduler;
+  private final FetchScheduler.Priority priority;
+
+  /**
+   * Constructs a loader for a ticker. The data directory is keyed on the normalized
+   * ticker, while errors name the ticker as the user typed it.
+   * @param ticker of the stock, normalized
+   * @param name of the stock as it was asked for, which requests to the API are sent with
+   * @param scheduler to pull missing data through
+   * @param priority of the requests to the API
+   */
+  PriceDataLoader(String ticker, String name, FetchScheduler scheduler,
+                  FetchScheduler.Priority priority) {
+    this.ticker = ticker;
+    this.name = name;
+    this.path = "data/" + ticker + ".csv";
+    this.scheduler = scheduler;
+    this.priority = priority;
+  }
+
+  /**
+   * Loads the price data of the stock.
+   * @return the price series of the stock
+   */
+  PriceSeries load() {
+    Path csv = Path.of(path);
+    if (!Files.exists(csv)) {
+      // the download is parsed as it is, rather than read back from the saved file, and
+      // the file is stamped as soon as the download is in place
+      PriceColumns columns = getDataFromAPI();
+      return cache(csv, stamp(csv), columns);
+    }
+
+    return loadLocal();
+  }
+
+  /**
+   * Loads the price data of the stock from the data directory only, never pulling it
+   * from the API.
+   * @return the price series of the stock
+   * @throws IllegalArgumentException if there is no local file for the ticker
+   */
+  PriceSeries loadLocal() throws IllegalArgumentException {
+    Path csv = Path.of(path);
+    if (!Files.exists(csv)) {
+      throw new IllegalArgumentException("No price data found for " + name);
+    }
+    PriceSeries cached = BinaryPriceCache.open(csv);
+    if (cached != null) {
+      return cached;
+    }
+    // stamped before it is read, so that a file replaced in the meantime does not match
+    BinaryPriceCache.Stamp stamp = stamp(csv);
+    return cache(csv, stamp, readCSV());
+  }
+
+  // writes the binary cache of the CSV file with the stamp of the file that was read and
+  // maps it, falling back to the columns themselves if the cache cannot be written
+  private PriceSeries cache(Path csv, BinaryPriceCache.Stamp stamp, PriceColumns columns) {
+    if (columns.size == 0 || stamp == null) {
+      return new ArrayPriceSeries(columns);
+    }
+    try {
+      BinaryPriceCache.write(csv, stamp, columns);
+      PriceSeries cached = BinaryPriceCache.open(csv);
+      if (cached != null) {
+        return cached;
+      }
+    } catch (IOException e) {
+      System.err.println("Error writing price cache: " + e.getMessage());
+    }
+    return new ArrayPriceSeries(columns);
+  }
+
+  /**
+   * Brings the local price data of the stock up to date and loads it. If there is
+   * local data, only the latest days are requested from the API and the days newer
+   * than the local data are added to the file; otherwise the full history is pulled.
+   * @return the price series of the stock
+   */
+  PriceSeries refresh() {
+    Path csv = Path.of(path);
+    if (!Files.exists(csv)) {
+      return load();
+    }
+    try {
+      mergeLatest(csv);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error refreshing price data for " + name + ": "
+              + e.getMessage());
+    }
+    return load();
+  }
+
+  // the stamp of the CSV file, or null if it cannot be read, in which case the columns
+  // are not cached
+  private static BinaryPriceCache.Stamp stamp(Path csv) {
+    try {
+      return BinaryPriceCache.Stamp.of(csv);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  // downloads the full history into the CSV file and parses the downloaded bytes
+  private PriceColumns getDataFromAPI() {
+    ByteBuffer response = fetch(true, Path.of(path));
+    try {
+      return PriceCsvParser.parse(response.duplicate());
+    } catch (NumberFormatException e) {
+      System.err.println("Error parsing number: " + e.getMessage());
+    }
+    return new PriceColumns(0).trim();
+  }
+
+  // requests the compact series and writes the rows newer than the newest local row
+  // in front of the local rows, both being ordered from the most recent date
+  private void mergeLatest(Path csv) throws IOException {
+    byte[] local = Files.readAllBytes(csv);
+    int headerEnd = indexOf(local, (byte) '\n', 0);
+    if (headerEnd == -1) {
+      // nothing worth merging into, start over from the full history
+      getDataFromAPI();
+      return;
+    }
+    String header = new String(local, 0, headerEnd, StandardCharsets.US_ASCII).trim();
+    int columns = header.split(",").length;
+    int dateIndex = findIndex(header.split(","), "timestamp");
+    int rowEnd = indexOf(local, (byte) '\n', headerEnd + 1);
+    String newest = new String(local, headerEnd + 1,
+            (rowEnd == -1 ? local.length : rowEnd) - headerEnd - 1,
+            StandardCharsets.US_ASCII).trim();
+    String newestDate = newest.isEmpty() || dateIndex == -1 ? "" : dateOf(newest, dateIndex,
+            columns);
+
+    String[] latest = StandardCharsets.US_ASCII.decode(fetch(false, null).duplicate())
+            .toString().split("\r?\n");
+    if (dateIndex == -1 || newestDate == null || !latest[0].trim().equalsIgnoreCase(header)) {
+      getDataFromAPI();
+      return;
+    }
+
+    StringBuilder added = new StringBuilder();
+    for (int i = 1; i < latest.length; i++) {
+      String row = latest[i].trim();
+      if (row.isEmpty()) {
+        continue;
+      }
+      String date = dateOf(row, dateIndex, columns);
+      if (date == null) {
+        // a row that does not match the header is treated like a different header
+        getDataFromAPI();
+        return;
+      }
+      // ISO dates order the same way as strings
+      if (date.compareTo(newestDate) <= 0) {
+        break;
+      }
+      added.append(row).append('\n');
+    }
+    if (added.length() == 0) {
+      return;
+    }
+
+    byte[] rows = added.toString().getBytes(StandardCharsets.US_ASCII);
+    byte[] merged = new byte[local.length + rows.length];
+    System.arraycopy(local, 0, merged, 0, headerEnd + 1);
+    System.arraycopy(rows, 0, merged, headerEnd + 1, rows.length);
+    System.arraycopy(local, headerEnd + 1, merged, headerEnd + 1 + rows.length,
+            local.length - headerEnd - 1);
+    writeAtomically(csv, merged);
+  }
+
+  // the date of a row, or null if the row does not have one value per column
+  private static String dateOf(String row, int dateIndex, int columns) {
+    String[] values = row.split(",", -1);
+    return values.length == columns ? values[dateIndex] : null;
+  }
+
+  // waits for the scheduled request, rethrowing the error of a failed request as is
+  private ByteBuffer fetch(boolean full, Path target) {
+    try {
+      return scheduler.fetch(name, full, target, priority).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalArgumentException("No price data found for " + name);
+    }
+  }
+
+  // writes to a temporary file next to the target, then moves it over the target so
+  // that readers never see a partially written file
+  private static void writeAtomically(Path target, byte[] contents) throws IOException {
+    Path dir = target.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, target.getFileName() + ".", ".tmp");
+    try {
+      Files.write(tmp, contents);
+      Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private PriceColumns readCSV() {
+    try {
+      return PriceCsvParser.parseColumns(Path.of(path));
+    } catch (IOException e) {
+      System.err.println("Error reading file: " + e.getMessage());
+    } catch (NumberFormatException e) {
+      System.err.println("Error parsing number: " + e.getMessage());
+    }
+    return new PriceColumns(0).trim();
+  }
+
+  private static int indexOf(byte[] bytes, byte b, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int findIndex(String[] strList, String str) {
+    for (int i = 0; i < strList.length; i++) {
+      if (strList[i].trim().equalsIgnoreCase(str)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,156 @@
+package model.stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the data directory for CSV files that are created or changed by another
+ * program, and reloads the matching stocks of a {@link StockRepository} in the
+ * background. Only stocks that are loaded are reloaded; others read the new file when
+ * they are first used anyway.
+ *
+ * <p>Reloading builds a new immutable stock and swaps it in for the loaded one, so a
+ * query that already holds the previous stock object finishes on the previous data.
+ * Files are usually written in several steps, so a stock is only reloaded once its file
+ * has not changed for a short delay.
+ */
+public final class PriceFileWatcher implements Closeable {
+
+  /**
+   * Default time in milliseconds a file must stay unchanged before it is reloaded.
+   */
+  public static final long DEFAULT_DELAY_MILLIS = 500;
+
+  private final StockRepository repository;
+  private final long delayMillis;
+  private final WatchService service;
+  private final ScheduledExecutorService reloader;
+  private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+  private final AtomicLong reloads = new AtomicLong();
+
+  /**
+   * Starts watching the data directory on behalf of a repository.
+   *
+   * @param repository whose stocks are reloaded
+   * @param delayMillis time in milliseconds a file must stay unchanged before it is
+   *                    reloaded
+   * @throws IllegalArgumentException if the data directory cannot be watched
+   */
+  public PriceFileWatcher(StockRepository repository, long delayMillis)
+          throws IllegalArgumentException {
+    if (delayMillis < 0) {
+      throw new IllegalArgumentException("The delay cannot be negative.");
+    }
+    this.repository = repository;
+    this.delayMillis = delayMillis;
+    Path dir = Path.of("data");
+    try {
+      this.service = dir.getFileSystem().newWatchService();
+      dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error watching data directory: " + e.getMessage());
+    }
+    this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "price-file-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Thread watcher = new Thread(this::watch, "price-file-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /**
+   * Gets the number of stocks reloaded so far.
+   *
+   * @return the number of reloads
+   */
+  public long getReloads() {
+    return reloads.get();
+  }
+
+  /**
+   * Stops watching the data directory. Reloads that have not started yet are dropped.
+   */
+  @Override
+  public void close() {
+    reloader.shutdownNow();
+    try {
+      service.close();
+    } catch (IOException e) {
+      System.err.println("Error closing data directory watcher: " + e.getMessage());
+    }
+  }
+
+  private void watch() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = service.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          // events were lost, so any loaded stock may have changed
+          for (String ticker : repository.getTickers()) {
+            schedule(ticker);
+          }
+          continue;
+        }
+        String name = event.context().toString();
+        String ticker = name.substring(0, Math.max(name.length() - ".csv".length(), 0));
+        if (name.endsWith(".csv") && !ticker.isBlank()) {
+          // a new file makes its ticker known to exist
+          TickerSymbols.getInstance().add(ticker);
+          schedule(TickerSymbols.normalize(ticker));
+        }
+      }
+      if (!key.reset()) {
+        return;
+      }
+    }
+  }
+
+  // (re)starts the delay of a ticker, so that it is reloaded once its file settles
+  private void schedule(String ticker) {
+    pending.compute(ticker, (t, previous) -> {
+      if (previous != null) {
+        previous.cancel(false);
+      }
+      try {
+        return reloader.schedule(() -> reload(t), delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        return null; // closed
+      }
+    });
+  }
+
+  private void reload(String ticker) {
+    pending.remove(ticker);
+    if (!repository.contains(ticker)) {
+      return;
+    }
+    try {
+      repository.reload(ticker);
+      reloads.incrementAndGet();
+    } catch (RuntimeException e) {
+      System.err.println("Error reloading " + ticker + ": " + e.getMessage());
+    }
+  }
+}
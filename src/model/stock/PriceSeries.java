@@ -0,0 +1,141 @@
+package model.stock;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Interface that represents the immutable price history of a single stock. Rows are
+ * ordered from the most recent date to the oldest date, and dates are represented as
+ * epoch days.
+ */
+public interface PriceSeries {
+
+  /**
+   * Gets the number of rows (trading days) in the series.
+   * @return the number of rows
+   */
+  int size();
+
+  /**
+   * Gets the date of a row.
+   * @param index of the row
+   * @return the date of the row as an epoch day
+   */
+  int getDate(int index);
+
+  /**
+   * Gets the opening price of a row.
+   * @param index of the row
+   * @return the opening price
+   */
+  double getOpen(int index);
+
+  /**
+   * Gets the highest price of a row.
+   * @param index of the row
+   * @return the highest price
+   */
+  double getHigh(int index);
+
+  /**
+   * Gets the lowest price of a row.
+   * @param index of the row
+   * @return the lowest price
+   */
+  double getLow(int index);
+
+  /**
+   * Gets the closing price of a row.
+   * @param index of the row
+   * @return the closing price
+   */
+  double getClose(int index);
+
+  /**
+   * Gets the traded volume of a row.
+   * @param index of the row
+   * @return the number of shares traded
+   */
+  long getVolume(int index);
+
+  /**
+   * Gets the approximate amount of memory held by the series.
+   * @return the size of the series in bytes
+   */
+  long sizeInBytes();
+
+  /**
+   * Checks if the data of the series is kept on the Java heap, as opposed to memory that
+   * is mapped or allocated outside of it.
+   * @return true if the data is on the heap, false otherwise
+   */
+  default boolean isOnHeap() {
+    return true;
+  }
+
+  /**
+   * Gets the index of the most recent row on or before the given day.
+   * @param day epoch day
+   * @return the index of the row, or -1 if the day is older than the series
+   */
+  default int floorIndex(long day) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getDate(mid) <= day) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low == size() ? -1 : low;
+  }
+
+  /**
+   * Gets a read-only view of the dates of a range of rows. Implementations backed by a
+   * single column share it with the view instead of copying it.
+   * @param from index of the first row, inclusive
+   * @param to index of the last row, exclusive
+   * @return the dates of the rows as epoch days, positioned at the first row
+   * @throws IndexOutOfBoundsException if the range is not within the series
+   */
+  default IntBuffer dates(int from, int to) {
+    checkRange(from, to);
+    IntBuffer res = IntBuffer.allocate(to - from);
+    for (int i = from; i < to; i++) {
+      res.put(getDate(i));
+    }
+    return res.flip().asReadOnlyBuffer();
+  }
+
+  /**
+   * Gets a read-only view of the closing prices of a range of rows. Implementations
+   * backed by a single column share it with the view instead of copying it.
+   * @param from index of the first row, inclusive
+   * @param to index of the last row, exclusive
+   * @return the closing prices of the rows, positioned at the first row
+   * @throws IndexOutOfBoundsException if the range is not within the series
+   */
+  default DoubleBuffer closes(int from, int to) {
+    checkRange(from, to);
+    DoubleBuffer res = DoubleBuffer.allocate(to - from);
+    for (int i = from; i < to; i++) {
+      res.put(getClose(i));
+    }
+    return res.flip().asReadOnlyBuffer();
+  }
+
+  /**
+   * Checks that a range of rows is within the series.
+   * @param from index of the first row, inclusive
+   * @param to index of the last row, exclusive
+   * @throws IndexOutOfBoundsException if the range is not within the series
+   */
+  default void checkRange(int from, int to) {
+    if (from < 0 || to > size() || from > to) {
+      throw new IndexOutOfBoundsException("Range [" + from + ", " + to
+              + ") out of bounds for length " + size());
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package model.stock;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.util.List;
 
 /**
@@ -25,6 +27,30 @@ public interface Stock {
    */
   List<String> getAllDates();
 
+  /**
+   * Gets the number of valid dates of the stock.
+   * @return the number of dates
+   */
+  int getSize();
+
+  /**
+   * Gets a read-only view of the closing prices between two indices of the closing
+   * prices list, without copying them.
+   * @param from index of the first price, inclusive
+   * @param to index of the last price, exclusive
+   * @return the closing prices within the range
+   */
+  DoubleBuffer getClosingPrices(int from, int to);
+
+  /**
+   * Gets a read-only view of the dates between two indices of the dates list, as epoch
+   * days, without copying them.
+   * @param from index of the first date, inclusive
+   * @param to index of the last date, exclusive
+   * @return the dates within the range
+   */
+  IntBuffer getDates(int from, int to);
+
   /**
    * Gets the closing price of the stock on a specified date.
    * @param date specified date
@@ -32,6 +58,22 @@ public interface Stock {
    */
   double getClosingPrice(String date);
 
+  /**
+   * Gets the number of shares of the stock traded on a specified date.
+   * @param date specified date
+   * @return the traded volume
+   */
+  long getVolume(String date);
+
+  /**
+   * Gets the daily bars of the stock between two dates, inclusive, ordered from the
+   * most recent date to the oldest date like the other lists of the stock.
+   * @param from the oldest date of the range
+   * @param to the most recent date of the range
+   * @return a list of bars within the range
+   */
+  List<Bar> getBars(String from, String to);
+
   /**
    * Gets the index of the closing prices list given the date.
    * @param date specified date
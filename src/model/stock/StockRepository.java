@@ -0,0 +1,733 @@
+package model.stock;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide, thread-safe store of loaded stocks. Each ticker's price data is read
+ * once and the same immutable {@link Stock} instance is handed out to every caller.
+ * The repository keeps the total size of the loaded price data under a memory budget,
+ * evicting the least recently used stocks when the budget is exceeded.
+ */
+public final class StockRepository {
+
+  /**
+   * System property for the memory budget of the shared repository in bytes.
+   */
+  public static final String MAX_BYTES_PROPERTY = "stocks.cache.maxBytes";
+
+  /**
+   * System property that makes the shared repository keep loaded price data compressed
+   * on the heap, see {@link CompressedPriceSeries}.
+   */
+  public static final String COMPRESS_PROPERTY = "stocks.cache.compress";
+
+  /**
+   * System property for the size in bytes from which price data read onto the heap is
+   * moved off of it by the shared repository, see {@link OffHeapPriceSeries}.
+   */
+  public static final String OFF_HEAP_THRESHOLD_PROPERTY = "stocks.cache.offHeapThreshold";
+
+  private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+  private static final long DEFAULT_OFF_HEAP_THRESHOLD = 64L * 1024;
+
+  // loading is mostly waiting on disk and the network, so every prefetched ticker gets
+  // its own thread
+  private static final ExecutorService LOADERS = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "stock-loader");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static final StockRepository INSTANCE = new StockRepository(
+          Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+  static {
+    INSTANCE.setCompressed(Boolean.getBoolean(COMPRESS_PROPERTY));
+    INSTANCE.setOffHeapThreshold(Long.getLong(OFF_HEAP_THRESHOLD_PROPERTY,
+            DEFAULT_OFF_HEAP_THRESHOLD));
+  }
+
+  // guarded by this; keyed by ticker id and access ordered so that iteration starts at
+  // the least recently used
+  private final LinkedHashMap<Integer, BasicStock> stocks = new LinkedHashMap<>(16, 0.75f,
+          true);
+  private final TickerSymbols symbols = TickerSymbols.getInstance();
+  private final Map<String, FutureTask<BasicStock>> loading = new HashMap<>();
+  private final FetchScheduler scheduler;
+  private final OffHeapArena arena = new OffHeapArena();
+  private long maxBytes;
+  private long bytes;
+  private volatile boolean compressed;
+  private volatile long offHeapThreshold = DEFAULT_OFF_HEAP_THRESHOLD;
+  private volatile TradingCalendar calendar = TradingCalendar.EMPTY; // written under this
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong loadNanos = new AtomicLong();
+
+  /**
+   * Constructs a repository with a memory budget.
+   *
+   * @param maxBytes maximum size of the loaded price data in bytes
+   */
+  public StockRepository(long maxBytes) {
+    this(maxBytes, new AlphaVantageClient());
+  }
+
+  /**
+   * Constructs a repository with a memory budget that pulls missing price data through
+   * the given client.
+   *
+   * @param maxBytes maximum size of the loaded price data in bytes
+   * @param client to pull price data from
+   */
+  public StockRepository(long maxBytes, AlphaVantageClient client) {
+    this(maxBytes, new FetchScheduler(client));
+  }
+
+  /**
+   * Constructs a repository with a memory budget that pulls missing price data through
+   * the given scheduler.
+   *
+   * @param maxBytes maximum size of the loaded price data in bytes
+   * @param scheduler to pull price data through
+   */
+  public StockRepository(long maxBytes, FetchScheduler scheduler) {
+    this.scheduler = scheduler;
+    setMaxBytes(maxBytes);
+  }
+
+  /**
+   * Gets the repository shared by the whole program.
+   *
+   * @return the shared repository
+   */
+  public static StockRepository getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the stock with the given ticker, loading its price data if it is not
+   * already loaded.
+   *
+   * @param ticker of the stock
+   * @return the shared stock object
+   * @throws IllegalArgumentException if there is no price data for the ticker
+   */
+  public Stock get(String ticker) throws IllegalArgumentException {
+    return getStock(ticker, FetchScheduler.Priority.LOOKUP);
+  }
+
+  /**
+   * Gets the stock with the given ticker in the background.
+   *
+   * @param ticker of the stock
+   * @return a future completing with the shared stock object
+   */
+  public CompletableFuture<Stock> getAsync(String ticker) {
+    return getAsync(ticker, FetchScheduler.Priority.LOOKUP);
+  }
+
+  /**
+   * Gets the stock with the given ticker in the background, downloading missing data
+   * with the given priority.
+   *
+   * @param ticker of the stock
+   * @param priority of the download if the stock has no local data
+   * @return a future completing with the shared stock object
+   */
+  public CompletableFuture<Stock> getAsync(String ticker, FetchScheduler.Priority priority) {
+    return CompletableFuture.supplyAsync(() -> getStock(ticker, priority), LOADERS);
+  }
+
+  /**
+   * Loads the stocks held in a portfolio concurrently and waits until all of them are
+   * loaded. Missing data is downloaded ahead of ad-hoc lookups. Tickers that fail to
+   * load are skipped, so that the error is reported by whoever uses the ticker
+   * afterwards.
+   *
+   * @param tickers of the stocks
+   * @return the tickers that could not be loaded
+   */
+  public List<String> prefetch(Collection<String> tickers) {
+    Set<String> distinct = new LinkedHashSet<>();
+    for (String ticker : tickers) {
+      if (ticker != null && !ticker.isBlank()) {
+        distinct.add(normalize(ticker));
+      }
+    }
+    Map<String, CompletableFuture<Stock>> futures = new LinkedHashMap<>();
+    for (String ticker : distinct) {
+      futures.put(ticker, getAsync(ticker, FetchScheduler.Priority.HOLDING));
+    }
+    List<String> failed = new ArrayList<>();
+    for (Map.Entry<String, CompletableFuture<Stock>> entry : futures.entrySet()) {
+      try {
+        entry.getValue().join();
+      } catch (CompletionException e) {
+        failed.add(entry.getKey());
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Loads every stock that has a CSV file in the data directory, parsing the files in
+   * parallel on all processors, and waits until all of them are loaded. Nothing is
+   * downloaded. Stocks that do not fit in the memory budget evict the least recently
+   * used ones like any other load.
+   *
+   * @return the time taken to load each stock and in total
+   * @throws IllegalArgumentException if the data directory cannot be read
+   */
+  public LoadReport loadAll() throws IllegalArgumentException {
+    List<String> tickers = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of("data"), "*.csv")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        tickers.add(name.substring(0, name.length() - ".csv".length()));
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Error reading data directory: " + e.getMessage());
+    }
+    Collections.sort(tickers);
+
+    Map<String, Long> nanos = new ConcurrentHashMap<>();
+    Map<String, String> errors = new ConcurrentHashMap<>();
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try {
+      pool.invoke(new LoadAction(tickers, 0, tickers.size(), nanos, errors));
+    } finally {
+      pool.shutdown();
+    }
+    return new LoadReport(tickers, nanos, errors, System.nanoTime() - start);
+  }
+
+  /**
+   * Brings the price data of a stock up to date with the API, requesting only the
+   * latest days when the stock already has local data, and replaces the loaded stock.
+   * Callers holding the previous stock object keep seeing the previous data.
+   *
+   * @param ticker of the stock
+   * @return the refreshed stock object
+   * @throws IllegalArgumentException if the data cannot be refreshed
+   */
+  public Stock refresh(String ticker) throws IllegalArgumentException {
+    String key = normalize(ticker);
+    long start = System.nanoTime();
+    PriceSeries series = place(new PriceDataLoader(key, ticker.trim(), scheduler,
+            FetchScheduler.Priority.LOOKUP).refresh());
+    loadNanos.addAndGet(System.nanoTime() - start);
+    return install(key, series);
+  }
+
+  /**
+   * Reads the price data of a stock again from the data directory, without pulling it
+   * from the API, and replaces the loaded stock. Callers holding the previous stock
+   * object keep seeing the previous data.
+   *
+   * @param ticker of the stock
+   * @return the reloaded stock object
+   * @throws IllegalArgumentException if there is no local data for the ticker
+   */
+  public Stock reload(String ticker) throws IllegalArgumentException {
+    String key = normalize(ticker);
+    long start = System.nanoTime();
+    PriceSeries series = place(new PriceDataLoader(key, ticker.trim(), scheduler,
+            FetchScheduler.Priority.LOOKUP).loadLocal());
+    loadNanos.addAndGet(System.nanoTime() - start);
+    return install(key, series);
+  }
+
+  /**
+   * Watches the data directory and reloads loaded stocks whose CSV file changes, see
+   * {@link PriceFileWatcher}.
+   *
+   * @return the watcher, to be closed when reloading is no longer wanted
+   * @throws IllegalArgumentException if the data directory cannot be watched
+   */
+  public PriceFileWatcher watch() throws IllegalArgumentException {
+    return new PriceFileWatcher(this, PriceFileWatcher.DEFAULT_DELAY_MILLIS);
+  }
+
+  /**
+   * Gets the tickers of the loaded stocks.
+   *
+   * @return the tickers
+   */
+  synchronized List<String> getTickers() {
+    List<String> res = new ArrayList<>(stocks.size());
+    for (int id : stocks.keySet()) {
+      res.add(symbols.getSymbol(id));
+    }
+    return res;
+  }
+
+  /**
+   * Gets the shared stock object with the given ticker.
+   *
+   * @param ticker of the stock
+   * @return the shared stock object
+   */
+  BasicStock getShared(String ticker) {
+    return getStock(ticker, FetchScheduler.Priority.LOOKUP);
+  }
+
+  /**
+   * Gets the trading calendar of every stock loaded so far, which resolves any date to
+   * the most recent trading day on or before it.
+   *
+   * @return the current trading calendar
+   */
+  public TradingCalendar getCalendar() {
+    return calendar;
+  }
+
+  /**
+   * Checks if a stock is currently loaded.
+   *
+   * @param ticker of the stock
+   * @return true if the stock is loaded, false otherwise
+   */
+  public synchronized boolean contains(String ticker) {
+    int id = symbols.find(normalize(ticker));
+    return id != -1 && stocks.containsKey(id);
+  }
+
+  /**
+   * Sets the memory budget, evicting stocks if the loaded data no longer fits.
+   *
+   * @param maxBytes maximum size of the loaded price data in bytes
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive.");
+    }
+    this.maxBytes = maxBytes;
+    evict(-1);
+  }
+
+  /**
+   * Sets whether stocks loaded from now on keep their price data compressed on the heap
+   * instead of in the form it was read in. Compressed data takes a fraction of the
+   * memory, so many more stocks fit in the budget, at the cost of decoding on access.
+   *
+   * @param compressed true to compress the price data of loaded stocks
+   */
+  public void setCompressed(boolean compressed) {
+    this.compressed = compressed;
+  }
+
+  /**
+   * Sets the size from which price data that was read onto the heap is moved off of it
+   * when a stock is loaded. Small series stay on the heap, where they are cheaper to
+   * allocate, while large series are kept out of the way of the garbage collector. Price
+   * data mapped from the binary cache is already off the heap and is left as it is.
+   *
+   * @param threshold size of the price data in bytes, {@link Long#MAX_VALUE} to keep
+   *                  everything on the heap
+   */
+  public void setOffHeapThreshold(long threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("The off-heap threshold cannot be negative.");
+    }
+    this.offHeapThreshold = threshold;
+  }
+
+  /**
+   * Removes a stock from the repository and gives the memory of its price data back
+   * right away if it is kept off the heap, rather than once it is no longer reachable.
+   * Stock objects for the ticker that were handed out before can no longer be read and
+   * throw an {@link IllegalStateException}, so this is only for a caller that holds the
+   * last reference to the stock; {@link #clear()} and eviction leave the memory to be
+   * given back once no caller holds the stock.
+   *
+   * @param ticker of the stock
+   * @return true if the stock was loaded, false otherwise
+   */
+  public synchronized boolean release(String ticker) {
+    int id = symbols.find(normalize(ticker));
+    BasicStock stock = id == -1 ? null : stocks.remove(id);
+    if (stock == null) {
+      return false;
+    }
+    bytes -= stock.getSeries().sizeInBytes();
+    releaseOffHeap(stock);
+    return true;
+  }
+
+  /**
+   * Removes every loaded stock from the repository. Stock objects handed out before can
+   * still be read, and the memory of price data kept off the heap is given back once they
+   * are no longer reachable.
+   */
+  public synchronized void clear() {
+    stocks.clear();
+    bytes = 0;
+    calendar = TradingCalendar.EMPTY;
+  }
+
+  /**
+   * Gets the statistics of the repository.
+   *
+   * @return a snapshot of the statistics
+   */
+  public synchronized Stats getStats() {
+    long heapBytes = 0;
+    for (BasicStock stock : stocks.values()) {
+      if (stock.getSeries().isOnHeap()) {
+        heapBytes += stock.getSeries().sizeInBytes();
+      }
+    }
+    return new Stats(hits.get(), misses.get(), coalesced.get(), evictions.get(),
+            loadNanos.get(), stocks.size(), bytes, maxBytes, heapBytes, arena.getBytes());
+  }
+
+  private BasicStock getStock(String ticker, FetchScheduler.Priority priority) {
+    String key = normalize(ticker);
+    FutureTask<BasicStock> task;
+    boolean owner = false;
+    synchronized (this) {
+      int id = symbols.find(key);
+      BasicStock stock = id == -1 ? null : stocks.get(id);
+      if (stock != null) {
+        hits.incrementAndGet();
+        return stock;
+      }
+      task = loading.get(key);
+      if (task == null) {
+        misses.incrementAndGet();
+        // errors name the ticker as this caller typed it, not the normalized key
+        String name = ticker.trim();
+        task = new FutureTask<>(() -> load(key, name, priority));
+        loading.put(key, task);
+        owner = true;
+      } else {
+        // the stock is not loaded yet, but this caller does not load it either
+        coalesced.incrementAndGet();
+      }
+    }
+
+    // load outside of the lock so that other tickers can be served in the meantime,
+    // callers asking for the same ticker wait on the same task
+    if (owner) {
+      task.run();
+      synchronized (this) {
+        loading.remove(key);
+      }
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading " + key, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private BasicStock load(String key, String name, FetchScheduler.Priority priority) {
+    long start = System.nanoTime();
+    PriceSeries series = place(new PriceDataLoader(key, name, scheduler, priority).load());
+    loadNanos.addAndGet(System.nanoTime() - start);
+    return install(key, series);
+  }
+
+  // decides where the price data of a loaded stock is kept: compressed on the heap if
+  // asked for, otherwise off the heap if it was read onto the heap and is large
+  private PriceSeries place(PriceSeries series) {
+    if (series.size() == 0) {
+      return series;
+    }
+    if (compressed) {
+      return new CompressedPriceSeries(series);
+    }
+    if (series.isOnHeap() && series.sizeInBytes() >= offHeapThreshold) {
+      return OffHeapPriceSeries.copyOf(series, arena);
+    }
+    return series;
+  }
+
+  // adds the days of the series to the calendar and replaces the loaded stock
+  private synchronized BasicStock install(String key, PriceSeries series) {
+    calendar = calendar.merge(series);
+    int id = symbols.add(key);
+    BasicStock stock = new BasicStock(symbols.getSymbol(id), series, calendar);
+    BasicStock old = stocks.put(id, stock);
+    if (old != null) {
+      bytes -= old.getSeries().sizeInBytes();
+    }
+    bytes += stock.getSeries().sizeInBytes();
+    evict(id);
+    return stock;
+  }
+
+  // evicts the least recently used stocks until the loaded data fits in the budget,
+  // never evicting the stock with the given ticker id; an evicted stock may still be held
+  // by a caller, so price data kept off the heap is given back once it is unreachable
+  private void evict(int keep) {
+    Iterator<Map.Entry<Integer, BasicStock>> it = stocks.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Map.Entry<Integer, BasicStock> entry = it.next();
+      if (entry.getKey() == keep) {
+        continue;
+      }
+      bytes -= entry.getValue().getSeries().sizeInBytes();
+      it.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  // only for stocks no caller holds any more; stocks that are evicted, cleared or
+  // replaced by a reload give their memory back once they are no longer reachable
+  private static void releaseOffHeap(BasicStock stock) {
+    if (stock.getSeries() instanceof OffHeapPriceSeries) {
+      ((OffHeapPriceSeries) stock.getSeries()).release();
+    }
+  }
+
+  private static String normalize(String ticker) {
+    if (ticker == null || ticker.isBlank()) {
+      throw new IllegalArgumentException("A stock with this ticker does not exist.");
+    }
+    return TickerSymbols.normalize(ticker);
+  }
+
+  // loads a range of tickers by splitting it in halves down to single tickers
+  private final class LoadAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> tickers;
+    private final int from;
+    private final int to;
+    private final Map<String, Long> nanos;
+    private final Map<String, String> errors;
+
+    private LoadAction(List<String> tickers, int from, int to, Map<String, Long> nanos,
+                       Map<String, String> errors) {
+      this.tickers = tickers;
+      this.from = from;
+      this.to = to;
+      this.nanos = nanos;
+      this.errors = errors;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new LoadAction(tickers, from, mid, nanos, errors),
+                new LoadAction(tickers, mid, to, nanos, errors));
+        return;
+      }
+      if (to == from) {
+        return;
+      }
+      String ticker = tickers.get(from);
+      long start = System.nanoTime();
+      try {
+        getStock(ticker, FetchScheduler.Priority.HOLDING);
+        nanos.put(ticker, System.nanoTime() - start);
+      } catch (RuntimeException e) {
+        errors.put(ticker, String.valueOf(e.getMessage()));
+      }
+    }
+  }
+
+  /**
+   * Timings of a {@link StockRepository#loadAll()}.
+   */
+  public static final class LoadReport {
+    private final Map<String, Long> nanos;
+    private final Map<String, String> errors;
+    private final long totalNanos;
+
+    private LoadReport(List<String> tickers, Map<String, Long> nanos,
+                       Map<String, String> errors, long totalNanos) {
+      // keep the order of the tickers rather than the order they finished in
+      Map<String, Long> orderedNanos = new LinkedHashMap<>();
+      Map<String, String> orderedErrors = new LinkedHashMap<>();
+      for (String ticker : tickers) {
+        if (nanos.containsKey(ticker)) {
+          orderedNanos.put(ticker, nanos.get(ticker));
+        } else if (errors.containsKey(ticker)) {
+          orderedErrors.put(ticker, errors.get(ticker));
+        }
+      }
+      this.nanos = Collections.unmodifiableMap(orderedNanos);
+      this.errors = Collections.unmodifiableMap(orderedErrors);
+      this.totalNanos = totalNanos;
+    }
+
+    /**
+     * Gets the time taken to load each stock that was loaded.
+     * @return the nanoseconds taken by ticker
+     */
+    public Map<String, Long> getTimings() {
+      return nanos;
+    }
+
+    /**
+     * Gets the error of each stock that could not be loaded.
+     * @return the error messages by ticker
+     */
+    public Map<String, String> getErrors() {
+      return errors;
+    }
+
+    /**
+     * Gets the time taken to load every stock.
+     * @return the nanoseconds taken
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder res = new StringBuilder();
+      for (Map.Entry<String, Long> entry : nanos.entrySet()) {
+        res.append(String.format("%-8s %8.1f ms%n", entry.getKey(), entry.getValue() / 1e6));
+      }
+      for (Map.Entry<String, String> entry : errors.entrySet()) {
+        res.append(String.format("%-8s failed: %s%n", entry.getKey(), entry.getValue()));
+      }
+      res.append(String.format("Loaded %d stock(s) in %.1f ms", nanos.size(),
+              totalNanos / 1e6));
+      return res.toString();
+    }
+  }
+
+  /**
+   * Statistics of a {@link StockRepository} at a point in time.
+   */
+  public static final class Stats {
+    private final long hits;
+    private final long misses;
+    private final long coalesced;
+    private final long evictions;
+    private final long loadNanos;
+    private final int entries;
+    private final long bytes;
+    private final long maxBytes;
+    private final long heapBytes;
+    private final long arenaBytes;
+
+    private Stats(long hits, long misses, long coalesced, long evictions, long loadNanos,
+                  int entries, long bytes, long maxBytes, long heapBytes, long arenaBytes) {
+      this.hits = hits;
+      this.misses = misses;
+      this.coalesced = coalesced;
+      this.evictions = evictions;
+      this.loadNanos = loadNanos;
+      this.entries = entries;
+      this.bytes = bytes;
+      this.maxBytes = maxBytes;
+      this.heapBytes = heapBytes;
+      this.arenaBytes = arenaBytes;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * Gets the number of lookups of a stock that was not loaded yet and waited for the load
+     * started by another lookup, which are neither hits nor misses.
+     * @return the number of lookups
+     */
+    public long getCoalesced() {
+      return coalesced;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    public long getLoadNanos() {
+      return loadNanos;
+    }
+
+    public int getEntries() {
+      return entries;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /**
+     * Gets the size of the loaded price data that is kept on the Java heap.
+     * @return the size in bytes
+     */
+    public long getHeapBytes() {
+      return heapBytes;
+    }
+
+    /**
+     * Gets the size of the loaded price data that is kept off the Java heap, either
+     * mapped from the binary cache or allocated by the repository.
+     * @return the size in bytes
+     */
+    public long getOffHeapBytes() {
+      return bytes - heapBytes;
+    }
+
+    /**
+     * Gets the memory allocated off the heap by the repository that is accounted as in
+     * use: the price data of loaded stocks and of evicted, cleared or replaced stocks that
+     * are still reachable. Memory that was given back may stay held by the JVM until its buffer is
+     * collected, so this is not the native memory of the process.
+     * @return the size in bytes
+     */
+    public long getArenaBytes() {
+      return arenaBytes;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d stock(s), %d/%d bytes (%d heap, %d off-heap, %d allocated), "
+                      + "%d hit(s), %d miss(es), %d coalesced, %d eviction(s), %.1f ms loading",
+              entries, bytes, maxBytes, heapBytes, bytes - heapBytes, arenaBytes, hits, misses,
+              coalesced, evictions, loadNanos / 1e6);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package model.stock;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of the ticker symbols known to exist, which are the tickers
+ * with a file in the data directory and the tickers that have been loaded. Each symbol
+ * is normalized to upper case and given a dense int id, starting at 0, that stays the
+ * same for the life of the program, so that positions and caches can be keyed on ints
+ * and checking if a ticker exists is a single hash lookup.
+ */
+public final class TickerSymbols {
+
+  private static final TickerSymbols INSTANCE = new TickerSymbols(Path.of("data"));
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] symbols = new String[64]; // grown under this
+  private volatile int size;
+
+  /**
+   * Constructs a dictionary of the tickers with a CSV file in a directory.
+   * @param dir the directory holding the price data
+   */
+  TickerSymbols(Path dir) {
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.csv")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        String ticker = name.substring(0, name.length() - ".csv".length());
+        if (!ticker.isBlank()) {
+          add(ticker);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Error reading data directory: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the dictionary shared by the whole program.
+   * @return the shared dictionary
+   */
+  public static TickerSymbols getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the id of a ticker.
+   * @param ticker in any case
+   * @return the id of the ticker, or -1 if the ticker is not known
+   */
+  public int find(String ticker) {
+    if (ticker == null) {
+      return -1;
+    }
+    Integer id = ids.get(normalize(ticker));
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Checks if a ticker is known to exist, without reading any price data.
+   * @param ticker in any case
+   * @return true if the ticker is known, false otherwise
+   */
+  public boolean contains(String ticker) {
+    return find(ticker) != -1;
+  }
+
+  /**
+   * Gets the normalized symbol of an id.
+   * @param id of the ticker
+   * @return the symbol in upper case
+   * @throws IllegalArgumentException if there is no ticker with the id
+   */
+  public String getSymbol(int id) throws IllegalArgumentException {
+    if (id < 0 || id >= size) {
+      throw new IllegalArgumentException("There is no ticker with id " + id + ".");
+    }
+    return symbols[id];
+  }
+
+  /**
+   * Gets the number of known tickers, which is one more than the largest id.
+   * @return the number of tickers
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds a ticker to the dictionary if it is not in it yet.
+   * @param ticker in any case
+   * @return the id of the ticker
+   */
+  int add(String ticker) {
+    String symbol = normalize(ticker);
+    Integer id = ids.get(symbol);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = ids.get(symbol);
+      if (id != null) {
+        return id;
+      }
+      if (size == symbols.length) {
+        symbols = Arrays.copyOf(symbols, size * 2);
+      }
+      // the symbol is readable by its id before the id can be looked up
+      symbols[size] = symbol;
+      size++;
+      ids.put(symbol, size - 1);
+      return size - 1;
+    }
+  }
+
+  /**
+   * Normalizes a ticker the way the dictionary stores it.
+   * @param ticker in any case
+   * @return the ticker in upper case without surrounding spaces
+   */
+  static String normalize(String ticker) {
+    return ticker.trim().toUpperCase();
+  }
+}
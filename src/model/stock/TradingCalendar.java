@@ -0,0 +1,119 @@
+package model.stock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable calendar of the trading days of every loaded stock. Each trading day has an
+ * ordinal, counting up from the oldest day, and any date can be resolved to the ordinal
+ * of the most recent trading day on or before it in constant time through a table
+ * indexed by epoch day.
+ */
+public final class TradingCalendar {
+
+  static final TradingCalendar EMPTY = new TradingCalendar(new int[0]);
+
+  private final int[] days; // epoch days, oldest first
+  private final int[] floor; // ordinal of the last trading day on or before days[0] + i
+
+  private TradingCalendar(int[] days) {
+    this.days = days;
+    if (days.length == 0) {
+      this.floor = new int[0];
+      return;
+    }
+    this.floor = new int[days[days.length - 1] - days[0] + 1];
+    int ordinal = 0;
+    for (int i = 0; i < floor.length; i++) {
+      if (ordinal + 1 < days.length && days[ordinal + 1] == days[0] + i) {
+        ordinal++;
+      }
+      floor[i] = ordinal;
+    }
+  }
+
+  /**
+   * Gets the number of trading days in the calendar.
+   *
+   * @return the number of trading days
+   */
+  public int size() {
+    return days.length;
+  }
+
+  /**
+   * Gets the trading day with the given ordinal.
+   *
+   * @param ordinal of the trading day
+   * @return the trading day as an epoch day
+   */
+  public int getDay(int ordinal) {
+    return days[ordinal];
+  }
+
+  /**
+   * Gets the ordinal of the most recent trading day on or before a day.
+   *
+   * @param day epoch day
+   * @return the ordinal, or -1 if the day is older than the calendar
+   */
+  public int floorOrdinal(long day) {
+    if (days.length == 0 || day < days[0]) {
+      return -1;
+    }
+    long offset = day - days[0];
+    return offset >= floor.length ? days.length - 1 : floor[(int) offset];
+  }
+
+  /**
+   * Gets the ordinal of a trading day.
+   *
+   * @param day epoch day
+   * @return the ordinal, or -1 if the day is not a trading day
+   */
+  public int ordinalOf(long day) {
+    int ordinal = floorOrdinal(day);
+    return ordinal != -1 && days[ordinal] == day ? ordinal : -1;
+  }
+
+  /**
+   * Gets the most recent trading day on or before a date, which is the date itself on
+   * trading days and the previous trading day on weekends and holidays.
+   *
+   * @param date in the format yyyy-MM-dd
+   * @return the trading day, or null if the date is older than the calendar
+   */
+  public String floorDate(String date) {
+    int ordinal = floorOrdinal(LocalDate.parse(date).toEpochDay());
+    return ordinal == -1 ? null : LocalDate.ofEpochDay(days[ordinal]).toString();
+  }
+
+  /**
+   * Gets a calendar that also holds the trading days of a series.
+   *
+   * @param series price data of a stock
+   * @return this calendar if it already holds every day of the series, otherwise a new
+   *         calendar holding the days of both
+   */
+  TradingCalendar merge(PriceSeries series) {
+    int added = 0;
+    for (int i = 0; i < series.size(); i++) {
+      if (ordinalOf(series.getDate(i)) == -1) {
+        added++;
+      }
+    }
+    if (added == 0) {
+      return this;
+    }
+
+    int[] merged = Arrays.copyOf(days, days.length + added);
+    int n = days.length;
+    for (int i = 0; i < series.size(); i++) {
+      if (ordinalOf(series.getDate(i)) == -1) {
+        merged[n++] = series.getDate(i);
+      }
+    }
+    Arrays.sort(merged);
+    return new TradingCalendar(Arrays.stream(merged).distinct().toArray());
+  }
+}
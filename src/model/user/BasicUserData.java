@@ -5,8 +5,8 @@ import java.util.List;
 
 import model.commands.Command;
 import model.portfolio.Portfolio;
-import model.stock.BasicStock;
 import model.stock.Stock;
+import model.stock.StockRepository;
 
 /**
  * Basic implementation of the {@link UserData} interface. In this implementation,
@@ -38,13 +38,15 @@ public class BasicUserData implements UserData {
   }
 
   /**
-   * Removes a portfolio from the user's data.
+   * Removes a portfolio from the user's data and closes the files it keeps open.
    *
    * @param portfolio {@link Portfolio} object to remove from the data
    */
   @Override
   public void removePortfolio(Portfolio portfolio) {
-    portfolios.remove(portfolio);
+    if (portfolios.remove(portfolio)) {
+      portfolio.close();
+    }
   }
 
   /**
@@ -106,7 +108,7 @@ public class BasicUserData implements UserData {
    */
   @Override
   public void setCurrentStock(String ticker) {
-    currentStock = new BasicStock(ticker);
+    currentStock = StockRepository.getInstance().get(ticker);
   }
 
   /**
@@ -119,7 +121,7 @@ public class BasicUserData implements UserData {
     if (currentStock == null) {
       throw new IllegalArgumentException("Not currently viewing a stock.");
     }
-    return new BasicStock(currentStock.getTicker());
+    return StockRepository.getInstance().get(currentStock.getTicker());
   }
 
   /**
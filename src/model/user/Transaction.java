@@ -2,20 +2,22 @@ package model.user;
 
 import java.time.LocalDate;
 
-import model.stock.BasicStock;
 import model.stock.Stock;
+import model.stock.StockRepository;
+import model.stock.TickerSymbols;
 
 /**
  * This class represents transactions on a portfolio that the user does, such as
- * buying stocks or selling stocks.
+ * buying stocks or selling stocks. Transactions are immutable, so that they can be shared
+ * by every snapshot of a ledger.
  */
 public class Transaction implements Comparable<Transaction> {
   private final boolean buy;
+  private final int tickerId;
   private final String ticker;
-  private final Stock stock;
   private final double shares;
   private final LocalDate date;
-  private int index;
+  private final int index;
 
   /**
    * Constructs a Transaction on a portfolio that is either for
@@ -28,25 +30,61 @@ public class Transaction implements Comparable<Transaction> {
    * @param index index of the transaction in the log of transactions
    */
   public Transaction(boolean buy, String ticker, double shares, String date, int index) {
-    try {
-      this.ticker = ticker.toUpperCase();
-      this.stock = new BasicStock(ticker);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException("A stock with this ticker does not exist.");
-    }
-    try {
-      this.date = LocalDate.parse(date);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException("This is not a valid date.");
-    }
+    this(buy, findTicker(ticker), shares, parseDate(date), index);
+  }
+
+  /**
+   * Constructs a Transaction on a portfolio from a ticker id that is already known, such
+   * as when many transactions are read at once.
+   *
+   * @param buy boolean to determine if the transaction is for buying or selling
+   * @param tickerId id of the ticker in the {@link TickerSymbols} dictionary
+   * @param shares number of shares of the stock that the transaction is being completed with
+   * @param date date of the transaction
+   * @param index index of the transaction in the log of transactions
+   */
+  public Transaction(boolean buy, int tickerId, double shares, LocalDate date, int index) {
     if (shares < 0) {
       throw new IllegalArgumentException("Cannot buy/sell negative shares");
     }
+    this.tickerId = tickerId;
+    this.ticker = TickerSymbols.getInstance().getSymbol(tickerId);
+    this.date = date;
     this.shares = shares;
     this.buy = buy;
     this.index = index;
   }
 
+  /**
+   * Gets the id of a ticker, looking up tickers without local data, which pulls them
+   * from the API.
+   *
+   * @param ticker ticker of the stock
+   * @return the id of the ticker
+   * @throws IllegalArgumentException if there is no stock with the ticker
+   */
+  public static int findTicker(String ticker) throws IllegalArgumentException {
+    TickerSymbols symbols = TickerSymbols.getInstance();
+    int id = symbols.find(ticker);
+    if (id == -1) {
+      try {
+        StockRepository.getInstance().get(ticker);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("A stock with this ticker does not exist.");
+      }
+      id = symbols.find(ticker);
+    }
+    return id;
+  }
+
+  private static LocalDate parseDate(String date) {
+    try {
+      return LocalDate.parse(date);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("This is not a valid date.");
+    }
+  }
+
   public boolean getType() {
     return buy;
   }
@@ -55,6 +93,10 @@ public class Transaction implements Comparable<Transaction> {
     return ticker;
   }
 
+  public int getTickerId() {
+    return tickerId;
+  }
+
   public double getShares() {
     return shares;
   }
@@ -64,11 +106,20 @@ public class Transaction implements Comparable<Transaction> {
   }
 
   public Stock getStock() {
-    return stock;
+    return StockRepository.getInstance().get(ticker);
   }
 
-  public void setIndex(int index) {
-    this.index = index;
+  /**
+   * Gets the same transaction at another index of the log of transactions.
+   *
+   * @param index index of the transaction in the log of transactions
+   * @return this transaction if it already has the index, otherwise a copy with the index
+   */
+  public Transaction withIndex(int index) {
+    if (index == this.index) {
+      return this;
+    }
+    return new Transaction(buy, tickerId, shares, date, index);
   }
 
   public int getIndex() {
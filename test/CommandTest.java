@@ -1,12 +1,20 @@
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import model.commands.AggregateValueCommand;
 import model.commands.PortfolioPerformanceCommand;
 import model.portfolio.BasicPortfolio;
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioValuation;
 import model.user.BasicUserData;
 import model.commands.LoadPortfolioCommand;
 import model.commands.PortfolioGetValueCommand;
@@ -19,11 +27,16 @@ import model.commands.Command;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for all commands.
  */
 public class CommandTest {
+  // files written by the tests into the portfolios directory
+  private static final List<String> FILES = List.of("many rows.csv", "many rows.journal",
+          "bad row.csv");
+
   UserData user;
   Portfolio p;
   Portfolio p1;
@@ -48,6 +61,13 @@ public class CommandTest {
     user.addPortfolio(p2);
   }
 
+  @After
+  public void tearDown() throws IOException {
+    for (String file : FILES) {
+      Files.deleteIfExists(Path.of("portfolios", file));
+    }
+  }
+
   @Test
   public void testStockNetGainCommand() {
     Command<Double> netGain;
@@ -196,6 +216,84 @@ public class CommandTest {
     });
   }
 
+  @Test
+  public void testAggregateValueCommand() {
+    AggregateValueCommand.Report report = user.execute(new AggregateValueCommand("2024-06-04"));
+    assertEquals(List.of("empty portfolio", "portfolio 1", "portfolio 2"),
+            new ArrayList<>(report.getTotals().keySet()));
+    assertEquals(List.of(0.0, 1943.50, 3694.80), new ArrayList<>(report.getTotals().values()));
+    assertEquals(5638.30, report.getGrandTotal(), 0.001);
+    assertEquals(3887.00, report.getExposure().get("AAPL"), 0.001);
+    assertEquals(1751.30, report.getExposure().get("GOOG"), 0.001);
+    assertEquals(Map.of(), report.getErrors());
+
+    // a later trade sells more than is held, so the portfolio cannot be valued on that day
+    Portfolio p3 = new BasicPortfolio("portfolio 3");
+    p3.buyStock("AAPL", 10.0, "2024-06-03");
+    p3.sellStock("AAPL", 5.0, "2024-06-04");
+    p3.sellStock("AAPL", 10.0, "2024-06-03");
+    user.addPortfolio(p3);
+    user.addPortfolio(new BasicPortfolio("portfolio 1"));
+    report = user.execute(new AggregateValueCommand("2024-06-01", "2024-06-04"));
+    assertEquals(0.0, report.getGrandTotal("2024-06-03"), 0.001);
+    assertEquals(5638.30, report.getGrandTotal("2024-06-04"), 0.001);
+    assertEquals(1943.50, report.getTotals().get("portfolio 1"), 0.001);
+    assertEquals(0.0, report.getTotals().get("portfolio 1 (2)"), 0.001);
+    assertEquals(Map.of("portfolio 3", "There is no such stock in the portfolio."),
+            report.getErrors());
+    // portfolio 3 is only missing from the day its ledger breaks
+    assertEquals(0.0, report.getTotals("2024-06-03").get("portfolio 3"), 0.001);
+    assertTrue(Double.isNaN(report.getTotals().get("portfolio 3")));
+    assertEquals(Map.of("portfolio 3", List.of(LocalDate.parse("2024-06-04"))),
+            report.getMissingDays());
+
+    // a range starting before the first quote of a stock held only misses those days
+    Portfolio p4 = new BasicPortfolio("portfolio 4");
+    p4.buyStock("AAPL", 10.0, "1999-10-29");
+    user.addPortfolio(p4);
+    report = user.execute(new AggregateValueCommand("1999-10-29", "1999-11-01"));
+    assertEquals(List.of(LocalDate.parse("1999-10-29"), LocalDate.parse("1999-10-30"),
+            LocalDate.parse("1999-10-31")), report.getMissingDays().get("portfolio 4"));
+    assertEquals("No data found on this date.", report.getErrors("1999-10-30").get(
+            "portfolio 4"));
+    assertEquals(0.0, report.getGrandTotal("1999-10-30"), 0.001);
+    assertEquals(776.20, report.getTotals().get("portfolio 4"), 0.001);
+    assertEquals(776.20, report.getGrandTotal(), 0.001);
+    assertEquals(Map.of("AAPL", 776.20), report.getExposure());
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      user.execute(new AggregateValueCommand("2024-06-04", "2024-06-01"));
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      user.execute(new AggregateValueCommand("3000-01-01"));
+    });
+    AggregateValueCommand.Report range = report;
+    assertThrows(IllegalArgumentException.class, () -> range.getTotals("2024-06-05"));
+  }
+
+  @Test
+  public void testAggregateValueFailure() {
+    // a portfolio failing in any way is reported as missing, and the others are valued
+    user.addPortfolio(new BasicPortfolio("broken") {
+      @Override
+      public Portfolio snapshot() {
+        return this;
+      }
+
+      @Override
+      public PortfolioValuation getValues(String from, String to) {
+        throw new IllegalStateException("price data could not be read");
+      }
+    });
+    AggregateValueCommand.Report report = user.execute(new AggregateValueCommand("2024-06-03",
+            "2024-06-04"));
+    assertEquals(5638.30, report.getGrandTotal(), 0.001);
+    assertTrue(Double.isNaN(report.getTotals("2024-06-03").get("broken")));
+    assertEquals(Map.of("broken", "price data could not be read"), report.getErrors());
+    assertEquals(Map.of("broken", List.of(LocalDate.parse("2024-06-03"),
+            LocalDate.parse("2024-06-04"))), report.getMissingDays());
+  }
+
   @Test
   public void testPortfolioRebalanceCommand() {
     Command<Double> getValue;
@@ -271,6 +369,41 @@ public class CommandTest {
     });
   }
 
+  @Test
+  public void testLoadManyRows() throws IOException {
+    // rows out of date order, with sells that are only valid once the rows are sorted
+    StringBuilder csv = new StringBuilder("Date,Type,Ticker,Amount\n");
+    for (int i = 0; i < 20000; i++) {
+      csv.append(LocalDate.of(2020, 1, 1).plusDays(i % 1000)).append(",BUY,")
+              .append(i % 3 == 0 ? "aapl" : "MSFT").append(",2\n");
+    }
+    csv.append("2019-12-31,BUY,GOOG,5\n").append("2020-01-01,SELL,GOOG,1\n");
+    Files.writeString(Path.of("portfolios/many rows.csv"), csv);
+    user.execute(new LoadPortfolioCommand("many rows"));
+    List<String> expected = new ArrayList<>();
+    expected.add("GOOG: 4 share(s)");
+    expected.add("AAPL: 13334 share(s)");
+    expected.add("MSFT: 26666 share(s)");
+    assertEquals(expected, user.getCurrentPortfolio().getComposition("2024-06-04"));
+    user.getCurrentPortfolio().close();
+
+    // errors name the row they are found in
+    String[] rows = {"2020-01-02,SELL,AAPL,1", "2020-01-02,BUY,NOTATICKER,1",
+        "2020-13-02,BUY,AAPL,1", "2020-01-02,BUY,AAPL,x", "2020-01-02,BUY",
+        "2999-01-02,BUY,AAPL,1"};
+    String[] messages = {"There is no such stock in the portfolio.",
+        "A stock with this ticker does not exist.", "This is not a valid date.",
+        "This is not a valid amount.", "Missing a column.", "Cannot trade a stock in the future."};
+    for (int i = 0; i < rows.length; i++) {
+      Files.writeString(Path.of("portfolios/bad row.csv"),
+              "Date,Type,Ticker,Amount\n2020-01-01,BUY,MSFT,1\n" + rows[i] + "\n");
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+        user.execute(new LoadPortfolioCommand("bad row"));
+      });
+      assertEquals("Error creating portfolio: Transaction 2: " + messages[i], e.getMessage());
+    }
+  }
+
   @Test
   public void testPortfolioPerformanceCommand() {
     user.setCurrentPortfolio(p2);
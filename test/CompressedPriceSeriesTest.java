@@ -0,0 +1,152 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import model.stock.ArrayPriceSeries;
+import model.stock.CompressedPriceSeries;
+import model.stock.PriceCsvParser;
+import model.stock.PriceSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class to test the {@link CompressedPriceSeries}.
+ */
+public class CompressedPriceSeriesTest {
+
+  @Test
+  public void testMatchesSource() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(Path.of("data"))) {
+      stream.filter(p -> p.toString().endsWith(".csv")).forEach(files::add);
+    }
+
+    long sourceBytes = 0;
+    long compressedBytes = 0;
+    for (Path file : files) {
+      PriceSeries source = PriceCsvParser.parse(file);
+      PriceSeries compressed = new CompressedPriceSeries(source);
+      assertSame(source, compressed);
+      if (source.size() > 1000) {
+        assertTrue(file + " is not compressed enough",
+                compressed.sizeInBytes() * 29 < source.sizeInBytes() * 10);
+      }
+      sourceBytes += source.sizeInBytes();
+      compressedBytes += compressed.sizeInBytes();
+    }
+    // the ratio reached on the bundled data, about 11 bytes a day against 44
+    assertTrue("ratio " + (double) sourceBytes / compressedBytes,
+            compressedBytes * 38 < sourceBytes * 10);
+  }
+
+  @Test
+  public void testIrregularValues() {
+    Random random = new Random(42);
+    int n = 1000;
+    int[] dates = new int[n];
+    double[] open = new double[n];
+    double[] high = new double[n];
+    double[] low = new double[n];
+    double[] close = new double[n];
+    long[] volume = new long[n];
+    int date = 20000;
+    for (int i = 0; i < n; i++) {
+      // gaps of up to ten years, prices that are not decimals and extreme volumes
+      date -= 1 + (i % 100 == 0 ? random.nextInt(3650) : random.nextInt(4));
+      dates[i] = date;
+      open[i] = random.nextDouble() * 1000;
+      high[i] = i % 7 == 0 ? Double.NaN : -random.nextGaussian();
+      low[i] = i % 11 == 0 ? -0.0 : Math.round(random.nextDouble() * 100) / 100.0;
+      close[i] = i % 13 == 0 ? Double.MAX_VALUE : 1e-300 * i;
+      volume[i] = i % 17 == 0 ? Long.MIN_VALUE : random.nextLong();
+    }
+    PriceSeries source = new ArrayPriceSeries(dates, open, high, low, close, volume);
+    assertSame(source, new CompressedPriceSeries(source));
+  }
+
+  @Test
+  public void testRoundLotsAndJumps() {
+    Random random = new Random(7);
+    int n = 300;
+    int[] dates = new int[n];
+    double[] prices = new double[n];
+    long[] volume = new long[n];
+    for (int i = 0; i < n; i++) {
+      dates[i] = 20000 - i;
+      // a split halfway through a block, and volumes in lots of a million
+      prices[i] = (i < 200 ? 100 : 400) + random.nextInt(100) / 100.0;
+      volume[i] = (random.nextInt(1000) - 500) * 1_000_000L;
+    }
+    volume[250] = Long.MAX_VALUE;
+    PriceSeries source = new ArrayPriceSeries(dates, prices, prices, prices, prices, volume);
+    assertSame(source, new CompressedPriceSeries(source));
+  }
+
+  @Test
+  public void testRanges() throws IOException {
+    PriceSeries source = PriceCsvParser.parse(Path.of("data/AAPL.csv"));
+    PriceSeries compressed = new CompressedPriceSeries(source);
+
+    // ranges within a block, across blocks and up to the end
+    int[][] ranges = {{0, 0}, {3, 10}, {100, 300}, {0, source.size()},
+        {source.size() - 5, source.size()}};
+    for (int[] range : ranges) {
+      DoubleBuffer closes = compressed.closes(range[0], range[1]);
+      IntBuffer dates = compressed.dates(range[0], range[1]);
+      assertEquals(range[1] - range[0], closes.remaining());
+      for (int i = range[0]; i < range[1]; i++) {
+        assertEquals(source.getClose(i), closes.get(i - range[0]), 0.0);
+        assertEquals(source.getDate(i), dates.get(i - range[0]));
+      }
+    }
+
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      compressed.getClose(source.size());
+    });
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      compressed.closes(5, 4);
+    });
+  }
+
+  @Test
+  public void testEmpty() {
+    PriceSeries empty = new CompressedPriceSeries(new ArrayPriceSeries(new int[0],
+            new double[0], new double[0], new double[0], new double[0], new long[0]));
+    assertEquals(0, empty.size());
+    assertEquals(-1, empty.floorIndex(0));
+    assertEquals(0, empty.closes(0, 0).remaining());
+  }
+
+  private static void assertSame(PriceSeries expected, PriceSeries actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getDate(i), actual.getDate(i));
+      assertBits(expected.getOpen(i), actual.getOpen(i));
+      assertBits(expected.getHigh(i), actual.getHigh(i));
+      assertBits(expected.getLow(i), actual.getLow(i));
+      assertBits(expected.getClose(i), actual.getClose(i));
+      assertEquals(expected.getVolume(i), actual.getVolume(i));
+    }
+    // every day from before the oldest row to after the newest row, including the days
+    // between the rows
+    int oldest = expected.getDate(expected.size() - 1);
+    int newest = expected.getDate(0);
+    for (long day = oldest - 3; day <= newest + 3; day++) {
+      assertEquals(expected.floorIndex(day), actual.floorIndex(day));
+    }
+  }
+
+  private static void assertBits(double expected, double actual) {
+    assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+  }
+}
@@ -0,0 +1,134 @@
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.stock.AlphaVantageClient;
+import model.stock.FetchScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class to test the {@link FetchScheduler} against a local stand-in of the Alpha
+ * Vantage API.
+ */
+public class FetchSchedulerTest {
+  HttpServer server;
+  ExecutorService handlers;
+  List<String> symbols;
+  CountDownLatch release;
+  AlphaVantageClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    symbols = Collections.synchronizedList(new ArrayList<>());
+    release = new CountDownLatch(0);
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    handlers = Executors.newCachedThreadPool();
+    server.setExecutor(handlers);
+    server.createContext("/query", exchange -> {
+      String query = exchange.getRequestURI().getQuery();
+      String symbol = query.replaceAll(".*symbol=([^&]*).*", "$1");
+      symbols.add(symbol);
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      String body = symbol.equals("BAD") ? "{\"Error Message\": \"Invalid API call.\"}"
+              : "timestamp,close\n2024-06-04," + symbol.length() + "\n";
+      byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    });
+    server.start();
+    client = new AlphaVantageClient("http://127.0.0.1:" + server.getAddress().getPort()
+            + "/query", "test");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    handlers.shutdownNow();
+  }
+
+  @Test
+  public void testSingleFlight() {
+    release = new CountDownLatch(1);
+    FetchScheduler scheduler = new FetchScheduler(client, 600, 10);
+    CompletableFuture<ByteBuffer> first = scheduler.fetch("AAPL", true, null,
+            FetchScheduler.Priority.LOOKUP);
+    CompletableFuture<ByteBuffer> second = scheduler.fetch("aapl", true, null,
+            FetchScheduler.Priority.HOLDING);
+    assertSame(first, second);
+    release.countDown();
+    assertEquals("timestamp,close\n2024-06-04,4\n",
+            StandardCharsets.US_ASCII.decode(second.join().duplicate()).toString());
+    assertEquals(List.of("AAPL"), symbols);
+
+    // a finished request is not shared with later requests
+    scheduler.fetch("AAPL", true, null, FetchScheduler.Priority.LOOKUP).join();
+    assertEquals(2, symbols.size());
+  }
+
+  @Test
+  public void testRateLimit() {
+    // one request every 100ms without any burst
+    FetchScheduler scheduler = new FetchScheduler(client, 600, 1);
+    long start = System.nanoTime();
+    List<CompletableFuture<ByteBuffer>> futures = new ArrayList<>();
+    for (String symbol : List.of("A", "B", "C", "D")) {
+      futures.add(scheduler.fetch(symbol, false, null, FetchScheduler.Priority.LOOKUP));
+    }
+    futures.forEach(CompletableFuture::join);
+    long elapsed = (System.nanoTime() - start) / 1_000_000;
+    assertTrue("took " + elapsed + "ms", elapsed >= 280);
+  }
+
+  @Test
+  public void testHoldingsFirst() {
+    // the first request uses the only token, the rest queue up behind the rate limit
+    FetchScheduler scheduler = new FetchScheduler(client, 300, 1);
+    scheduler.fetch("FIRST", true, null, FetchScheduler.Priority.LOOKUP).join();
+    CompletableFuture<ByteBuffer> lookup = scheduler.fetch("LOOK", true, null,
+            FetchScheduler.Priority.LOOKUP);
+    CompletableFuture<ByteBuffer> other = scheduler.fetch("OTHER", true, null,
+            FetchScheduler.Priority.LOOKUP);
+    CompletableFuture<ByteBuffer> holding = scheduler.fetch("HOLD", true, null,
+            FetchScheduler.Priority.HOLDING);
+    // an ad-hoc lookup that a portfolio now needs is promoted, keeping its place in line
+    scheduler.fetch("OTHER", true, null, FetchScheduler.Priority.HOLDING);
+    CompletableFuture.allOf(lookup, other, holding).join();
+    assertEquals(List.of("FIRST", "OTHER", "HOLD", "LOOK"), symbols);
+  }
+
+  @Test
+  public void testErrors() {
+    FetchScheduler scheduler = new FetchScheduler(client, 600, 10);
+    CompletionException e = assertThrows(CompletionException.class, () -> {
+      scheduler.fetch("BAD", true, null, FetchScheduler.Priority.LOOKUP).join();
+    });
+    assertTrue(e.getCause() instanceof IllegalArgumentException);
+    assertThrows(IllegalArgumentException.class, () -> new FetchScheduler(client, 0, 1));
+  }
+}
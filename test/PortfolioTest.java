@@ -1,13 +1,32 @@
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
+import model.commands.LoadPortfolioCommand;
 import model.portfolio.BasicPortfolio;
+import model.portfolio.Order;
 import model.portfolio.Portfolio;
+import model.portfolio.PortfolioJournal;
+import model.portfolio.PortfolioValuation;
 import model.stock.BasicStock;
 import model.stock.Stock;
+import model.user.BasicUserData;
+import model.user.Transaction;
+import model.user.UserData;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
@@ -19,6 +38,13 @@ import static org.junit.Assert.assertFalse;
  * Test class to test the implementations of the {@link Portfolio} interface.
  */
 public class PortfolioTest {
+  // files the tests write to the portfolios folder
+  private static final List<String> FILES = List.of("empty portfolio.csv",
+          "portfolio 1.csv", "portfolio 2.csv", "journal test.csv", "journal test.journal",
+          "fresh journal.csv", "fresh journal.journal", "binary test.ledger",
+          "binary test.csv", "binary test.journal", "broken.ledger", "rejected trade.csv",
+          "rejected trade.journal", "taken name.csv", "taken name.journal");
+
   Portfolio p;
   Portfolio p1;
   Portfolio p2;
@@ -35,6 +61,13 @@ public class PortfolioTest {
     p2.buyStock("GOOG", 10.0, "2024-06-04");
   }
 
+  @After
+  public void tearDown() throws IOException {
+    for (String file : FILES) {
+      Files.deleteIfExists(Path.of("portfolios", file));
+    }
+  }
+
   @Test
   public void testGetName() {
     assertEquals("empty portfolio", p.getName());
@@ -228,6 +261,248 @@ public class PortfolioTest {
     assertFalse(p.isEmpty("2024-06-04"));
   }
 
+  @Test
+  public void testLongHistory() {
+    // hundreds of trades made out of date order, so that most of them are inserted
+    // before trades that were already made
+    String[] tickers = {"AAPL", "GOOG", "MSFT", "AMZN"};
+    Random random = new Random(7);
+    List<Object[]> trades = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      LocalDate date = LocalDate.of(2020, 1, 1).plusDays(random.nextInt(1500));
+      trades.add(new Object[] {date, tickers[random.nextInt(tickers.length)], true, 100.0});
+    }
+    for (int i = 0; i < 200; i++) {
+      LocalDate date = LocalDate.of(2024, 3, 1).plusDays(random.nextInt(60));
+      trades.add(new Object[] {date, tickers[random.nextInt(tickers.length)], false, 1.0});
+    }
+    for (Object[] trade : trades) {
+      if ((boolean) trade[2]) {
+        p.buyStock((String) trade[1], (double) trade[3], trade[0].toString());
+      } else {
+        p.sellStock((String) trade[1], (double) trade[3], trade[0].toString());
+      }
+    }
+
+    // replay the trades from the beginning in date order, keeping the order they were
+    // made in on the same date
+    List<Object[]> sorted = new ArrayList<>(trades);
+    sorted.sort(Comparator.comparing(trade -> (LocalDate) trade[0]));
+    for (int d = 0; d < 1600; d += 37) {
+      LocalDate date = LocalDate.of(2020, 1, 1).plusDays(d);
+      Map<String, Double> expected = new LinkedHashMap<>();
+      for (Object[] trade : sorted) {
+        if (!((LocalDate) trade[0]).isAfter(date)) {
+          double sign = (boolean) trade[2] ? 1 : -1;
+          expected.merge((String) trade[1], sign * (double) trade[3], Double::sum);
+        }
+      }
+      List<Double> shares = p.getShares(date.toString());
+      List<Stock> stocks = p.getStocks(date.toString());
+      assertEquals(expected.size(), stocks.size());
+      int i = 0;
+      for (Map.Entry<String, Double> entry : expected.entrySet()) {
+        assertEquals(entry.getKey(), stocks.get(i).getTicker());
+        assertEquals(entry.getValue(), shares.get(i), 0.0001);
+        i++;
+      }
+    }
+  }
+
+  @Test
+  public void testAppendAndBackdate() {
+    p.buyStock("AAPL", 10.0, "2024-06-03");
+    p.buyStock("GOOG", 2.0, "2024-06-04");
+    // back-dated, so it comes first
+    p.buyStock("MSFT", 5.0, "2024-05-01");
+    assertEquals(List.of("MSFT: 5 share(s)", "AAPL: 10 share(s)", "GOOG: 2 share(s)"),
+            p.getComposition("2024-06-04"));
+
+    // selling everything removes the stock, buying it again adds it at the end
+    p.sellStock("AAPL", 10.0, "2024-06-04");
+    p.buyStock("AAPL", 1.0, "2024-06-04");
+    assertEquals(List.of("MSFT: 5 share(s)", "GOOG: 2 share(s)", "AAPL: 1 share(s)"),
+            p.getComposition("2024-06-04"));
+    assertEquals(List.of("MSFT: 5 share(s)", "AAPL: 10 share(s)"),
+            p.getComposition("2024-06-03"));
+
+    // many trades on the latest date
+    for (int i = 0; i < 1000; i++) {
+      p.buyStock("GOOG", 1.0, "2024-06-04");
+    }
+    assertEquals(List.of(5.0, 1002.0, 1.0), p.getShares("2024-06-04"));
+    assertEquals(List.of(5.0), p.getShares("2024-05-31"));
+  }
+
+  @Test
+  public void testValues() {
+    // more trades than fit between two checkpoints, on and off trading days
+    Random random = new Random(11);
+    String[] tickers = {"AAPL", "GOOG", "MSFT"};
+    for (int i = 0; i < 150; i++) {
+      LocalDate date = LocalDate.of(2022, 1, 1).plusDays(random.nextInt(800));
+      p.buyStock(tickers[random.nextInt(tickers.length)], 1.5, date.toString());
+    }
+    p.sellStock("GOOG", 2.0, "2023-06-10");
+
+    PortfolioValuation values = p.getValues("2021-12-25", "2024-06-04");
+    assertEquals(LocalDate.of(2021, 12, 25), values.getFrom());
+    assertEquals(LocalDate.of(2024, 6, 4), values.getTo());
+    for (LocalDate date = values.getFrom(); !date.isAfter(values.getTo());
+         date = date.plusDays(1)) {
+      // the value of each day on its own, in the order of the positions
+      double expected = 0.0;
+      List<Stock> stocks = p.getStocks(date.toString());
+      List<Double> shares = p.getShares(date.toString());
+      for (int i = 0; i < stocks.size(); i++) {
+        expected += stocks.get(i).getClosingPrice(date.toString()) * shares.get(i);
+      }
+      assertEquals(expected, values.getValue(date), 0.0);
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      values.getValue(LocalDate.of(2024, 6, 5));
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      p.getValues("2024-06-04", "2024-06-03");
+    });
+
+    // a stock held before its price data starts
+    p1.buyStock("META", 1.0, "2012-01-03");
+    PortfolioValuation early = p1.getValues("2012-05-01", "2012-06-01");
+    assertThrows(IllegalArgumentException.class, () -> {
+      early.getValue(LocalDate.of(2012, 5, 17));
+    });
+    assertTrue(early.getValue(LocalDate.of(2012, 5, 18)) > 0);
+  }
+
+  @Test
+  public void testSubmitOrders() {
+    // a batch makes the same trades as the same orders made one at a time
+    Random random = new Random(5);
+    String[] tickers = {"AAPL", "GOOG", "MSFT"};
+    Portfolio single = new BasicPortfolio("single");
+    single.buyStock("AAPL", 3.0, "2023-01-03");
+    p.buyStock("AAPL", 3.0, "2023-01-03");
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String date = LocalDate.of(2022, 1, 1).plusDays(random.nextInt(700)).toString();
+      String ticker = tickers[random.nextInt(tickers.length)];
+      orders.add(new Order(true, ticker, 2.0, date));
+    }
+    orders.add(new Order(false, "AAPL", 1.0, "2024-01-02"));
+    orders.add(new Order(false, "GOOG", 1000.0, "2024-01-02"));
+    List<Order> sorted = new ArrayList<>(orders);
+    sorted.sort(Comparator.comparing(Order::getDate));
+    for (Order order : sorted) {
+      if (order.getType()) {
+        single.buyStock(order.getTicker(), order.getShares(), order.getDate());
+      } else {
+        single.sellStock(order.getTicker(), order.getShares(), order.getDate());
+      }
+    }
+    p.submitOrders(orders);
+    for (int d = 0; d < 900; d += 23) {
+      String date = LocalDate.of(2021, 12, 1).plusDays(d).toString();
+      assertEquals(single.getComposition(date), p.getComposition(date));
+    }
+    p.buyStock("MSFT", 1.0, "2024-06-04");
+    single.buyStock("MSFT", 1.0, "2024-06-04");
+    assertEquals(single.getComposition("2024-06-04"), p.getComposition("2024-06-04"));
+
+    // nothing is made if any order is invalid
+    List<String> before = p.getComposition("2024-06-04");
+    assertThrows(IllegalArgumentException.class, () -> {
+      p.submitOrders(List.of(new Order(true, "AAPL", 5.0, "2024-06-03"),
+              new Order(false, "TSLA", 1.0, "2024-06-04")));
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      p.submitOrders(List.of(new Order(true, "AAPL", 5.0, "2024-06-03"),
+              new Order(true, "AAPL", -1.0, "2024-06-04")));
+    });
+    assertEquals(before, p.getComposition("2024-06-04"));
+    assertThrows(IllegalArgumentException.class, () -> {
+      p1.submitOrders(List.of(new Order(false, "AAPL", 5.0, "2024-06-03")));
+    });
+    assertEquals(List.of("AAPL: 10 share(s)"), p1.getComposition("2024-06-04"));
+  }
+
+  @Test
+  public void testSnapshot() {
+    for (int i = 0; i < 100; i++) {
+      p.buyStock("AAPL", 1.0, "2024-06-03");
+    }
+    Portfolio copy = p.snapshot();
+
+    // trades on either one do not change the other, even when both append
+    p.buyStock("GOOG", 2.0, "2024-06-04");
+    p.buyStock("MSFT", 5.0, "2024-05-01");
+    copy.buyStock("MSFT", 3.0, "2024-06-04");
+    assertEquals(List.of("AAPL: 100 share(s)", "MSFT: 3 share(s)"),
+            copy.getComposition("2024-06-04"));
+    assertEquals(List.of("MSFT: 5 share(s)", "AAPL: 100 share(s)", "GOOG: 2 share(s)"),
+            p.getComposition("2024-06-04"));
+    assertTrue(copy.isEmpty("2024-06-02"));
+    assertFalse(p.isEmpty("2024-06-02"));
+
+    // a back-dated trade renumbers copies, not the transactions the ledger already holds
+    List<Transaction> loaded = List.of(new Transaction(true, "AAPL", 1.0, "2024-06-03", 0),
+            new Transaction(true, "AAPL", 1.0, "2024-06-04", 1));
+    BasicPortfolio q = new BasicPortfolio("renumbered");
+    q.loadTransactions(loaded);
+    q.buyStock("GOOG", 1.0, "2024-06-03");
+    assertEquals(0, loaded.get(0).getIndex());
+    assertEquals(1, loaded.get(1).getIndex());
+    assertEquals(List.of(1.0, 1.0), q.getShares("2024-06-03"));
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    int trades = 2000;
+    List<Throwable> errors = new ArrayList<>();
+    Thread writer = new Thread(() -> {
+      Random random = new Random(24);
+      for (int i = 0; i < trades; i++) {
+        // appended and back-dated trades, which replace every checkpoint after them
+        String date = i % 3 == 0 ? "2024-05-" + (10 + random.nextInt(20)) : "2024-06-03";
+        p.buyStock(i % 2 == 0 ? "AAPL" : "GOOG", 1.0, date);
+      }
+    });
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < 3; r++) {
+      readers.add(new Thread(() -> {
+        try {
+          double previous = 0.0;
+          while (writer.isAlive()) {
+            // only buys, so the shares held never go down
+            Portfolio copy = p.snapshot();
+            List<Double> shares = copy.getShares("2024-06-04");
+            assertEquals(shares.size(), copy.getStocks("2024-06-04").size());
+            double total = shares.stream().mapToDouble(Double::doubleValue).sum();
+            assertTrue(total >= previous);
+            previous = total;
+            copy.getValues("2024-05-01", "2024-06-04");
+          }
+        } catch (Throwable e) {
+          synchronized (errors) {
+            errors.add(e);
+          }
+        }
+      }));
+    }
+    writer.start();
+    for (Thread reader : readers) {
+      reader.start();
+    }
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertEquals(List.of(), errors);
+    assertEquals(List.of((double) trades / 2, (double) trades / 2),
+            p.getShares("2024-06-04"));
+  }
+
   @Test
   public void testSave() {
     // test saving empty portfolio
@@ -254,4 +529,174 @@ public class PortfolioTest {
             "portfolios/portfolio 2.csv";
     assertEquals(expected, p2.save());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testJournal() throws IOException {
+    Path file = Path.of("portfolios/journal test.csv");
+    Path journal = Path.of("portfolios/journal test.journal");
+    Files.deleteIfExists(journal);
+    BasicPortfolio portfolio = new BasicPortfolio("journal test");
+    portfolio.buyStock("AAPL", 10.0, "2024-06-03");
+    portfolio.save();
+    assertFalse(Files.exists(journal));
+
+    // trades made after saving go to the journal only
+    String saved = Files.readString(file);
+    portfolio.buyStock("GOOG", 2.0, "2024-06-04");
+    portfolio.submitOrders(List.of(new Order(false, "AAPL", 4.0, "2024-06-04"),
+            new Order(true, "MSFT", 1.0, "2024-05-01")));
+    assertEquals(saved, Files.readString(file));
+    assertEquals(3, Files.readAllLines(journal).size());
+
+    // a trade that was being written when the program stopped is dropped
+    Files.writeString(journal, "4,2024-06-04,BUY,AAPL,1,0", StandardOpenOption.APPEND);
+    UserData user = new BasicUserData();
+    user.execute(new LoadPortfolioCommand("journal test"));
+    Portfolio loaded = user.getCurrentPortfolio();
+    assertEquals(portfolio.getComposition("2024-06-04"), loaded.getComposition("2024-06-04"));
+    assertEquals(portfolio.getComposition("2024-05-31"), loaded.getComposition("2024-05-31"));
+    assertEquals(3, Files.readAllLines(journal).size());
+
+    // the loaded portfolio keeps appending, and the journal is folded into the file
+    // once it is large enough
+    for (int i = 0; i < 1100; i++) {
+      loaded.buyStock("AAPL", 1.0, "2024-06-04");
+    }
+    assertTrue(Files.readAllLines(journal).size() < 1024);
+    user.execute(new LoadPortfolioCommand("journal test"));
+    assertEquals(List.of("MSFT: 1 share(s)", "AAPL: 1106 share(s)", "GOOG: 2 share(s)"),
+            user.getCurrentPortfolio().getComposition("2024-06-04"));
+    portfolio.close();
+    loaded.close();
+  }
+
+  @Test
+  public void testNewPortfolioJournal() throws IOException {
+    Path file = Path.of("portfolios/fresh journal.csv");
+    Path journal = Path.of("portfolios/fresh journal.journal");
+    BasicPortfolio portfolio = new BasicPortfolio("fresh journal");
+    portfolio.setJournal(new PortfolioJournal("fresh journal"));
+    assertFalse(Files.exists(file));
+
+    // the first trade writes the file and later ones go to the journal, without saving
+    portfolio.buyStock("AAPL", 10.0, "2024-06-03");
+    assertEquals(2, Files.readAllLines(file).size());
+    portfolio.buyStock("GOOG", 2.0, "2024-06-04");
+    assertEquals(1, Files.readAllLines(journal).size());
+
+    // closing forces the journal to the disk, and trading again opens it again
+    portfolio.close();
+    portfolio.sellStock("AAPL", 4.0, "2024-06-04");
+    portfolio.close();
+    assertEquals(2, Files.readAllLines(journal).size());
+    UserData user = new BasicUserData();
+    user.execute(new LoadPortfolioCommand("fresh journal"));
+    assertEquals(portfolio.getComposition("2024-06-04"),
+            user.getCurrentPortfolio().getComposition("2024-06-04"));
+    user.removePortfolio(user.getCurrentPortfolio());
+  }
+
+  @Test
+  public void testJournalKeepsOtherPortfolio() throws IOException {
+    Path file = Path.of("portfolios/taken name.csv");
+    Path journal = Path.of("portfolios/taken name.journal");
+    List<String> saved = List.of("Date,Type,Ticker,Amount", "2024-01-03,BUY,AAPL,2",
+            "2024-01-04,BUY,MSFT,1");
+    Files.write(file, saved);
+
+    // a new portfolio with the name of a saved one does not replace its file
+    BasicPortfolio portfolio = new BasicPortfolio("taken name");
+    portfolio.setJournal(new PortfolioJournal("taken name"));
+    portfolio.buyStock("GOOG", 1.0, "2024-01-04");
+    assertEquals(saved, Files.readAllLines(file));
+    assertFalse(Files.exists(journal));
+
+    // until it is saved, after which its trades are journaled
+    portfolio.save();
+    assertEquals(2, Files.readAllLines(file).size());
+    portfolio.buyStock("GOOG", 1.0, "2024-01-05");
+    portfolio.close();
+    assertEquals(1, Files.readAllLines(journal).size());
+  }
+
+  @Test
+  public void testRejectedTrade() throws IOException {
+    BasicPortfolio portfolio = new BasicPortfolio("rejected trade");
+    portfolio.setJournal(new PortfolioJournal("rejected trade"));
+    portfolio.buyStock("GOOG", 2.0, "2024-01-03");
+    portfolio.buyStock("GOOG", 1.0, "2024-01-04");
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+      portfolio.sellStock("AAPL", 1.0, "2024-01-04");
+    });
+    assertEquals("There is no such stock in the portfolio.", e.getMessage());
+    // a back-dated sell of more than was held then is rejected too
+    assertThrows(IllegalArgumentException.class, () -> {
+      portfolio.sellStock("GOOG", 1.0, "2024-01-02");
+    });
+
+    // neither trade is kept nor written, so the portfolio loads again
+    assertEquals(List.of("GOOG: 3 share(s)"), portfolio.getComposition("2024-01-04"));
+    portfolio.close();
+    assertEquals(1, Files.readAllLines(Path.of("portfolios/rejected trade.journal")).size());
+    UserData user = new BasicUserData();
+    user.execute(new LoadPortfolioCommand("rejected trade"));
+    assertEquals(List.of("GOOG: 3 share(s)"),
+            user.getCurrentPortfolio().getComposition("2024-01-04"));
+    user.removePortfolio(user.getCurrentPortfolio());
+  }
+
+  @Test
+  public void testBinaryLedger() throws IOException {
+    Random random = new Random(3);
+    String[] tickers = {"AAPL", "GOOG", "MSFT", "AMZN"};
+    BasicPortfolio portfolio = new BasicPortfolio("binary test");
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      String date = LocalDate.of(2015, 1, 1).plusDays(random.nextInt(3000)).toString();
+      orders.add(new Order(true, tickers[random.nextInt(tickers.length)], 1.25, date));
+    }
+    orders.add(new Order(false, "GOOG", 0.123456789, "2024-01-02"));
+    portfolio.submitOrders(orders);
+    assertEquals("Portfolio [binary test] successfully saved to portfolios/binary test.ledger",
+            portfolio.saveBinary());
+
+    UserData user = new BasicUserData();
+    user.execute(new LoadPortfolioCommand("binary test"));
+    Portfolio loaded = user.getCurrentPortfolio();
+    assertEquals("binary test", loaded.getName());
+    for (int d = 0; d < 3300; d += 97) {
+      String date = LocalDate.of(2014, 12, 1).plusDays(d).toString();
+      assertEquals(portfolio.getStocks(date).size(), loaded.getStocks(date).size());
+      List<Double> expected = portfolio.getShares(date);
+      List<Double> actual = loaded.getShares(date);
+      for (int i = 0; i < expected.size(); i++) {
+        // shares are kept to a hundred millionth
+        assertEquals(expected.get(i), actual.get(i), 1e-6);
+      }
+    }
+
+    // the portfolio keeps trading after it is loaded
+    loaded.sellStock("AAPL", 1.0, "2024-06-04");
+    portfolio.sellStock("AAPL", 1.0, "2024-06-04");
+    List<Double> expected = portfolio.getShares("2024-06-04");
+    List<Double> actual = loaded.getShares("2024-06-04");
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), actual.get(i), 1e-6);
+    }
+
+    loaded.close();
+
+    Files.write(Path.of("portfolios/broken.ledger"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IllegalArgumentException.class, () -> {
+      user.execute(new LoadPortfolioCommand("broken"));
+    });
+    // a damaged ticker count is reported before anything is allocated for it
+    ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0x504C4742).putInt(1).putInt(0).putInt(Integer.MAX_VALUE);
+    Files.write(Path.of("portfolios/broken.ledger"), header.array());
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+      user.execute(new LoadPortfolioCommand("broken"));
+    });
+    assertEquals("Error creating portfolio: The ledger file is damaged.", e.getMessage());
+  }
+}
@@ -0,0 +1,95 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import model.stock.PriceCsvParser;
+import model.stock.PriceSeries;
+
+/**
+ * Benchmark comparing the {@link PriceCsvParser} against reading price files with
+ * {@code BufferedReader.readLine}, {@code String.split} and {@code Double.parseDouble}.
+ * Run it from the directory holding the {@code data} folder, optionally passing the
+ * number of measured rounds.
+ */
+public class PriceCsvParserBenchmark {
+
+  /**
+   * Runs the benchmark over every CSV file in the data directory.
+   *
+   * @param args optional number of measured rounds
+   */
+  public static void main(String[] args) throws IOException {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(Path.of("data"))) {
+      stream.filter(p -> p.toString().endsWith(".csv")).sorted().forEach(files::add);
+    }
+    long bytes = 0;
+    for (Path file : files) {
+      bytes += Files.size(file);
+    }
+
+    // warm up both paths so the JIT has compiled them before measuring
+    for (int i = 0; i < 5; i++) {
+      runSplit(files);
+      runParser(files);
+    }
+
+    long split = 0;
+    long parser = 0;
+    double checksum = 0;
+    for (int i = 0; i < rounds; i++) {
+      long start = System.nanoTime();
+      checksum += runSplit(files);
+      split += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      checksum -= runParser(files);
+      parser += System.nanoTime() - start;
+    }
+
+    System.out.printf("%d file(s), %.1f MB, %d round(s)%n", files.size(), bytes / 1e6, rounds);
+    report("readLine/split", split, rounds, bytes);
+    report("PriceCsvParser", parser, rounds, bytes);
+    System.out.printf("speedup: %.1fx (checksum %.1f)%n", (double) split / parser, checksum);
+  }
+
+  private static void report(String name, long nanos, int rounds, long bytes) {
+    double ms = nanos / 1e6 / rounds;
+    System.out.printf("%-16s %8.2f ms/round %8.1f MB/s%n", name, ms, bytes / 1e3 / ms);
+  }
+
+  // the way price files were read before PriceCsvParser
+  private static double runSplit(List<Path> files) throws IOException {
+    double sum = 0;
+    for (Path file : files) {
+      try (BufferedReader br = new BufferedReader(new FileReader(file.toFile()))) {
+        String line = br.readLine();
+        while ((line = br.readLine()) != null) {
+          String[] values = line.split(",");
+          sum += LocalDate.parse(values[0]).toEpochDay();
+          sum += Double.parseDouble(values[4]);
+        }
+      }
+    }
+    return sum;
+  }
+
+  private static double runParser(List<Path> files) throws IOException {
+    double sum = 0;
+    for (Path file : files) {
+      PriceSeries series = PriceCsvParser.parse(file);
+      for (int i = 0; i < series.size(); i++) {
+        sum += series.getDate(i);
+        sum += series.getClose(i);
+      }
+    }
+    return sum;
+  }
+}
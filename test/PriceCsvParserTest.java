@@ -0,0 +1,73 @@
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import model.stock.PriceCsvParser;
+import model.stock.PriceSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Test class to test the {@link PriceCsvParser}.
+ */
+public class PriceCsvParserTest {
+
+  @Test
+  public void testMatchesStringParsing() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(Path.of("data"))) {
+      stream.filter(p -> p.toString().endsWith(".csv")).forEach(files::add);
+    }
+
+    for (Path file : files) {
+      PriceSeries series = PriceCsvParser.parse(file);
+      try (BufferedReader br = new BufferedReader(new FileReader(file.toFile()))) {
+        br.readLine();
+        String line;
+        int i = 0;
+        while ((line = br.readLine()) != null) {
+          String[] values = line.split(",");
+          assertEquals(LocalDate.parse(values[0]).toEpochDay(), series.getDate(i));
+          assertEquals(Double.parseDouble(values[4]), series.getClose(i), 0.0);
+          i++;
+        }
+        assertEquals(i, series.size());
+      }
+    }
+  }
+
+  @Test
+  public void testFormats() throws IOException {
+    Path csv = Files.createTempFile("prices", ".csv");
+    try {
+      // reordered columns, windows line endings, exponents and a blank line
+      Files.writeString(csv, "close,timestamp\r\n"
+              + "1.5e2,2024-02-29\r\n"
+              + "\r\n"
+              + "-3,2000-01-01\r\n");
+      PriceSeries series = PriceCsvParser.parse(csv);
+      assertEquals(2, series.size());
+      assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), series.getDate(0));
+      assertEquals(150.0, series.getClose(0), 0.0);
+      assertEquals(LocalDate.of(2000, 1, 1).toEpochDay(), series.getDate(1));
+      assertEquals(-3.0, series.getClose(1), 0.0);
+
+      Files.writeString(csv, "timestamp,close\n2024-06-04,abc\n");
+      assertThrows(NumberFormatException.class, () -> PriceCsvParser.parse(csv));
+
+      Files.writeString(csv, "{\"Error Message\": \"Invalid API call.\"}\n");
+      assertThrows(IllegalArgumentException.class, () -> PriceCsvParser.parse(csv));
+    } finally {
+      Files.deleteIfExists(csv);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import model.stock.AlphaVantageClient;
+import model.stock.Stock;
+import model.stock.StockRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class to test refreshing price data against a local stand-in of the Alpha
+ * Vantage API.
+ */
+public class PriceRefreshTest {
+  private static final String HEADER = "timestamp,open,high,low,close,volume\n";
+
+  HttpServer server;
+  List<String> queries;
+  String compact;
+  StockRepository repository;
+  Path csv;
+  Path bin;
+
+  @Before
+  public void setUp() throws IOException {
+    queries = new ArrayList<>();
+    compact = HEADER
+            + "2024-06-05,12.0,13.0,11.0,12.5,300\n"
+            + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+            + "2024-06-03,9.0,10.0,8.0,9.5,200\n";
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/query", exchange -> {
+      String query = exchange.getRequestURI().getQuery();
+      queries.add(query);
+      String body;
+      if (!query.contains("symbol=TESTREF")) {
+        body = "{\"Error Message\": \"Invalid API call.\"}";
+      } else if (query.contains("outputsize=compact")) {
+        body = compact;
+      } else {
+        body = HEADER
+                + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+                + "2024-06-03,9.0,10.0,8.0,9.5,200\n";
+      }
+      byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    });
+    server.start();
+    String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/query";
+    repository = new StockRepository(1024 * 1024, new AlphaVantageClient(url, "test"));
+    csv = Path.of("data/TESTREF.csv");
+    bin = Path.of("data/TESTREF.bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.stop(0);
+    Files.deleteIfExists(csv);
+    Files.deleteIfExists(bin);
+  }
+
+  @Test
+  public void testMissingTickerFetchesFullHistory() throws IOException {
+    Stock stock = repository.get("TESTREF");
+    assertEquals(1, queries.size());
+    assertTrue(queries.get(0).contains("outputsize=full"));
+    assertEquals(2, stock.getAllDates().size());
+    assertEquals(9.5, stock.getClosingPrice("2024-06-03"), 0.001);
+    assertTrue(Files.exists(csv));
+    assertTrue(Files.exists(bin));
+
+    // the download is moved into place, leaving no temporary files behind
+    try (Stream<Path> files = Files.list(Path.of("data"))) {
+      assertFalse(files.anyMatch(p -> p.toString().endsWith(".tmp")));
+    }
+  }
+
+  @Test
+  public void testRefreshMergesNewRows() throws IOException {
+    Stock old = repository.get("TESTREF");
+    Stock refreshed = repository.refresh("TESTREF");
+    assertTrue(queries.get(1).contains("outputsize=compact"));
+
+    assertEquals(3, refreshed.getAllDates().size());
+    assertEquals(12.5, refreshed.getClosingPrice("2024-06-05"), 0.001);
+    assertEquals(300, refreshed.getVolume("2024-06-05"));
+    assertEquals(9.5, refreshed.getClosingPrice("2024-06-03"), 0.001);
+    assertEquals(HEADER
+            + "2024-06-05,12.0,13.0,11.0,12.5,300\n"
+            + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+            + "2024-06-03,9.0,10.0,8.0,9.5,200\n", Files.readString(csv));
+
+    // the repository hands out the new data, earlier callers keep the old data
+    assertEquals(3, repository.get("TESTREF").getAllDates().size());
+    assertEquals(2, old.getAllDates().size());
+
+    // refreshing again adds nothing
+    repository.refresh("TESTREF");
+    assertEquals(3, repository.get("TESTREF").getAllDates().size());
+  }
+
+  @Test
+  public void testRefreshMalformedRow() throws IOException {
+    repository.get("TESTREF");
+    // a short row in the compact series falls back to the full history
+    compact = HEADER
+            + "2024-06-05\n"
+            + "2024-06-04,10.0,12.0,9.0,11.0,100\n";
+    Stock refreshed = repository.refresh("TESTREF");
+    assertEquals(3, queries.size());
+    assertTrue(queries.get(2).contains("outputsize=full"));
+    assertEquals(2, refreshed.getAllDates().size());
+    assertEquals(HEADER
+            + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+            + "2024-06-03,9.0,10.0,8.0,9.5,200\n", Files.readString(csv));
+  }
+
+  @Test
+  public void testUnknownTicker() {
+    assertThrows(IllegalArgumentException.class, () -> repository.get("TESTUNKNOWN"));
+  }
+}
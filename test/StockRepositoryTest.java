@@ -0,0 +1,377 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import model.stock.AlphaVantageClient;
+import model.stock.ArrayPriceSeries;
+import model.stock.OffHeapArena;
+import model.stock.OffHeapPriceSeries;
+import model.stock.PriceFileWatcher;
+import model.stock.Stock;
+import model.stock.StockRepository;
+import model.stock.TickerSymbols;
+import model.stock.TradingCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class to test the {@link StockRepository}.
+ */
+public class StockRepositoryTest {
+  StockRepository repository;
+
+  @Before
+  public void setUp() {
+    repository = new StockRepository(64L * 1024 * 1024);
+  }
+
+  @Test
+  public void testSharedInstances() {
+    Stock apple = repository.get("AAPL");
+    assertSame(apple, repository.get("AAPL"));
+    assertSame(apple, repository.get("aapl"));
+    assertEquals("AAPL", apple.getTicker());
+    assertEquals(194.35, apple.getClosingPrice("2024-06-04"), 0.01);
+  }
+
+  @Test
+  public void testStats() {
+    repository.get("AAPL");
+    repository.get("AAPL");
+    repository.get("GOOG");
+    StockRepository.Stats stats = repository.getStats();
+    assertEquals(2, stats.getMisses());
+    assertEquals(1, stats.getHits());
+    assertEquals(2, stats.getEntries());
+    assertEquals(0, stats.getEvictions());
+    assertTrue(stats.getBytes() > 0);
+  }
+
+  @Test
+  public void testCoalescedLoads() throws InterruptedException {
+    int threads = 8;
+    Stock[] stocks = new Stock[threads];
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      int n = i;
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        stocks[n] = repository.get("MSFT");
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    // one lookup loads the stock, the others either wait for it or find it loaded
+    StockRepository.Stats stats = repository.getStats();
+    assertEquals(1, stats.getMisses());
+    assertEquals(threads - 1, stats.getHits() + stats.getCoalesced());
+    for (Stock stock : stocks) {
+      assertSame(stocks[0], stock);
+    }
+  }
+
+  @Test
+  public void testEviction() {
+    repository.get("AAPL");
+    long appleBytes = repository.getStats().getBytes();
+
+    // only one stock fits, so loading a second one evicts the least recently used
+    repository.setMaxBytes(appleBytes + 1);
+    repository.get("MSFT");
+    assertFalse(repository.contains("AAPL"));
+    assertTrue(repository.contains("MSFT"));
+    assertEquals(1, repository.getStats().getEvictions());
+
+    // evicted stocks are loaded again on demand
+    assertEquals(194.35, repository.get("AAPL").getClosingPrice("2024-06-04"), 0.01);
+    assertEquals(2, repository.getStats().getEvictions());
+  }
+
+  @Test
+  public void testBinaryCache() throws IOException {
+    Path csv = Path.of("data/TESTBIN.csv");
+    Path bin = Path.of("data/TESTBIN.bin");
+    try {
+      Files.writeString(csv, "timestamp,open,high,low,close,volume\n"
+              + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+              + "2024-06-03,9.0,10.0,8.0,9.5,200\n");
+      assertEquals(11.0, repository.get("TESTBIN").getClosingPrice("2024-06-05"), 0.001);
+      assertTrue(Files.exists(bin));
+
+      // a fresh repository reads the same data back from the binary file
+      Stock cached = new StockRepository(1024 * 1024).get("TESTBIN");
+      assertEquals(9.5, cached.getClosingPrice("2024-06-03"), 0.001);
+      assertEquals(2, cached.getAllDates().size());
+
+      // changing the CSV invalidates the binary file
+      Files.writeString(csv, "timestamp,open,high,low,close,volume\n"
+              + "2024-06-04,10.0,12.0,9.0,12.5,100\n");
+      Files.setLastModifiedTime(csv, FileTime.fromMillis(
+              Files.getLastModifiedTime(csv).toMillis() + 1000));
+      Stock refreshed = new StockRepository(1024 * 1024).get("TESTBIN");
+      assertEquals(12.5, refreshed.getClosingPrice("2024-06-04"), 0.001);
+      assertEquals(1, refreshed.getAllDates().size());
+    } finally {
+      Files.deleteIfExists(csv);
+      Files.deleteIfExists(bin);
+    }
+  }
+
+  @Test
+  public void testCompressed() {
+    Stock plain = repository.get("AAPL");
+    long plainBytes = repository.getStats().getBytes();
+
+    StockRepository compressed = new StockRepository(64L * 1024 * 1024);
+    compressed.setCompressed(true);
+    Stock apple = compressed.get("AAPL");
+    assertEquals(plain.getAllDates(), apple.getAllDates());
+    assertEquals(plain.getAllClosingPrices(), apple.getAllClosingPrices());
+    assertEquals(plain.getVolume("2024-06-04"), apple.getVolume("2024-06-04"));
+    assertTrue(compressed.getStats().getBytes() * 3 < plainBytes);
+  }
+
+  @Test
+  public void testOffHeapSeries() {
+    OffHeapArena arena = new OffHeapArena();
+    OffHeapPriceSeries series = OffHeapPriceSeries.copyOf(new ArrayPriceSeries(
+            new int[] {19878, 19877}, new double[] {10, 9}, new double[] {12, 10},
+            new double[] {9, 8}, new double[] {11, 9.5}, new long[] {100, 200}), arena);
+    assertFalse(series.isOnHeap());
+    assertEquals(19877, series.getDate(1));
+    assertEquals(10.0, series.getHigh(1), 0.0);
+    assertEquals(9.5, series.closes(0, 2).get(1), 0.0);
+    assertEquals(200, series.getVolume(1));
+    assertEquals(series.sizeInBytes(), arena.getBytes());
+    assertEquals(1, arena.getAllocations());
+
+    series.release();
+    series.release();
+    assertTrue(series.isReleased());
+    assertEquals(0, arena.getBytes());
+    assertEquals(0, arena.getAllocations());
+    assertThrows(IllegalStateException.class, () -> series.getClose(0));
+  }
+
+  @Test
+  public void testOffHeapEviction() throws IOException, InterruptedException {
+    List<Path> files = List.of(Path.of("data/TESTEVA.csv"), Path.of("data/TESTEVB.csv"));
+    List<Path> blocked = List.of(Path.of("data/TESTEVA.bin"), Path.of("data/TESTEVB.bin"));
+    StockRepository small = new StockRepository(1);
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        Files.writeString(files.get(i), "timestamp,open,high,low,close,volume\n"
+                + "2024-06-04,10.0,12.0,9.0,11.0,100\n");
+        // a directory in place of the binary cache keeps the parsed data on the heap
+        Files.createDirectories(blocked.get(i).resolve("blocked"));
+      }
+      small.setOffHeapThreshold(0);
+      Stock first = small.get("TESTEVA");
+      long size = small.getStats().getArenaBytes();
+      assertTrue(size > 0);
+
+      // each stock is over the budget, so loading the second evicts the first, which can
+      // still be read by whoever holds it
+      Stock second = small.get("TESTEVB");
+      assertEquals(1, small.getStats().getEvictions());
+      assertEquals(1, small.getStats().getEntries());
+      assertEquals(11.0, first.getClosingPrice("2024-06-04"), 0.0);
+      first = null;
+
+      // the memory of stocks that are evicted or cleared is given back once they are
+      // no longer reachable
+      small.clear();
+      assertEquals(11.0, second.getClosingPrice("2024-06-04"), 0.0);
+      second = null;
+      for (int i = 0; i < 100 && small.getStats().getArenaBytes() > 0; i++) {
+        System.gc();
+        Thread.sleep(20);
+      }
+      assertEquals(0, small.getStats().getArenaBytes());
+    } finally {
+      for (int i = 0; i < files.size(); i++) {
+        Files.deleteIfExists(files.get(i));
+        Files.deleteIfExists(blocked.get(i).resolve("blocked"));
+        Files.deleteIfExists(blocked.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testOffHeapPlacement() throws IOException {
+    Path csv = Path.of("data/TESTOFF.csv");
+    Path bin = Path.of("data/TESTOFF.bin");
+    try {
+      // a directory in place of the binary cache keeps the parsed data on the heap
+      Files.writeString(csv, "timestamp,open,high,low,close,volume\n"
+              + "2024-06-04,10.0,12.0,9.0,11.0,100\n");
+      Files.createDirectories(bin.resolve("blocked"));
+      repository.setOffHeapThreshold(Long.MAX_VALUE);
+      repository.get("TESTOFF");
+      assertEquals(repository.getStats().getBytes(), repository.getStats().getHeapBytes());
+      assertEquals(0, repository.getStats().getArenaBytes());
+
+      repository.clear();
+      repository.setOffHeapThreshold(0);
+      Stock stock = repository.get("TESTOFF");
+      StockRepository.Stats stats = repository.getStats();
+      assertEquals(0, stats.getHeapBytes());
+      assertEquals(stats.getBytes(), stats.getOffHeapBytes());
+      assertEquals(stats.getBytes(), stats.getArenaBytes());
+      assertEquals(11.0, stock.getClosingPrice("2024-06-04"), 0.0);
+
+      // mapped data is already off the heap and is not copied
+      repository.get("AAPL");
+      assertEquals(stats.getArenaBytes(), repository.getStats().getArenaBytes());
+
+      assertTrue(repository.release("TESTOFF"));
+      assertFalse(repository.release("TESTOFF"));
+      assertFalse(repository.contains("TESTOFF"));
+      assertEquals(0, repository.getStats().getArenaBytes());
+      assertThrows(IllegalStateException.class, () -> stock.getClosingPrice("2024-06-04"));
+    } finally {
+      Files.deleteIfExists(csv);
+      Files.deleteIfExists(bin.resolve("blocked"));
+      Files.deleteIfExists(bin);
+    }
+  }
+
+  @Test
+  public void testCalendar() {
+    Stock google = repository.get("GOOG");
+    Stock apple = repository.get("AAPL");
+    TradingCalendar calendar = repository.getCalendar();
+    assertEquals(apple.getAllDates().size(), calendar.size());
+    assertEquals("2024-05-31", calendar.floorDate("2024-06-02"));
+    assertEquals("2024-06-04", calendar.floorDate("2024-06-04"));
+    assertEquals("2024-06-04", calendar.floorDate("2030-01-01"));
+    assertEquals(null, calendar.floorDate("1999-10-31"));
+
+    // resolving through the calendar matches walking back through each stock's dates
+    for (Stock stock : List.of(google, apple)) {
+      List<String> dates = stock.getAllDates();
+      LocalDate day = LocalDate.parse("1999-10-01");
+      int expected = -1;
+      for (int i = dates.size() - 1; !day.isAfter(LocalDate.parse("2024-06-10"));
+           day = day.plusDays(1)) {
+        while (i >= 0 && !LocalDate.parse(dates.get(i)).isAfter(day)) {
+          expected = i--;
+        }
+        assertEquals(day.toString(), expected, stock.getIndex(day.toString()));
+      }
+    }
+  }
+
+  @Test
+  public void testPrefetch() {
+    StockRepository offline = new StockRepository(64L * 1024 * 1024,
+            new AlphaVantageClient("http://127.0.0.1:1/query", "test"));
+    List<String> failed = offline.prefetch(List.of("AAPL", "msft", "AAPL", "TESTMISSING"));
+    assertEquals(List.of("TESTMISSING"), failed);
+    assertTrue(offline.contains("AAPL"));
+    assertTrue(offline.contains("MSFT"));
+    assertEquals(2, offline.getStats().getEntries());
+  }
+
+  @Test
+  public void testWatch() throws IOException, InterruptedException {
+    Path csv = Path.of("data/TESTWATCH.csv");
+    Path bin = Path.of("data/TESTWATCH.bin");
+    Files.writeString(csv, "timestamp,open,high,low,close,volume\n"
+            + "2024-06-03,9.0,10.0,8.0,9.5,200\n");
+    try (PriceFileWatcher watcher = new PriceFileWatcher(repository, 50)) {
+      Stock before = repository.get("TESTWATCH");
+
+      // another program adds a day to the file
+      Files.writeString(csv, "timestamp,open,high,low,close,volume\n"
+              + "2024-06-04,10.0,12.0,9.0,11.0,100\n"
+              + "2024-06-03,9.0,10.0,8.0,9.5,200\n");
+      Files.setLastModifiedTime(csv, FileTime.fromMillis(
+              Files.getLastModifiedTime(csv).toMillis() + 1000));
+      long deadline = System.currentTimeMillis() + 10000;
+      while (watcher.getReloads() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(1, watcher.getReloads());
+      assertEquals(11.0, repository.get("TESTWATCH").getClosingPrice("2024-06-04"), 0.0);
+      assertEquals(9.5, before.getClosingPrice("2024-06-04"), 0.0);
+
+      // stocks that are not loaded are left alone
+      repository.release("TESTWATCH");
+      Files.writeString(csv, "timestamp,open,high,low,close,volume\n");
+      Thread.sleep(300);
+      assertEquals(1, watcher.getReloads());
+    } finally {
+      Files.deleteIfExists(csv);
+      Files.deleteIfExists(bin);
+    }
+  }
+
+  @Test
+  public void testLoadAll() throws IOException {
+    long files;
+    try (Stream<Path> stream = Files.list(Path.of("data"))) {
+      files = stream.filter(p -> p.toString().endsWith(".csv")).count();
+    }
+    StockRepository.LoadReport report = repository.loadAll();
+    assertEquals(files, report.getTimings().size());
+    assertTrue(report.getErrors().isEmpty());
+    assertEquals(files, repository.getStats().getEntries());
+    assertEquals(files, repository.getStats().getMisses());
+    assertTrue(report.getTimings().containsKey("AAPL"));
+    assertTrue(report.getTotalNanos() > 0);
+    assertTrue(report.toString().endsWith("Loaded " + files + " stock(s) in "
+            + String.format("%.1f ms", report.getTotalNanos() / 1e6)));
+
+    // later lookups reuse the loaded stocks
+    repository.get("MSFT");
+    assertEquals(files, repository.getStats().getMisses());
+  }
+
+  @Test
+  public void testSymbols() {
+    TickerSymbols symbols = TickerSymbols.getInstance();
+    // tickers with local data are known before they are loaded
+    assertTrue(symbols.contains("msft"));
+    int id = symbols.find(" Msft ");
+    assertEquals(id, symbols.find("MSFT"));
+    assertEquals("MSFT", symbols.getSymbol(id));
+    assertSame(symbols.getSymbol(id), repository.get("msft").getTicker());
+
+    assertFalse(symbols.contains("TESTUNKNOWN"));
+    assertEquals(-1, symbols.find(null));
+    assertThrows(IllegalArgumentException.class, () -> symbols.getSymbol(symbols.size()));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> repository.setMaxBytes(0));
+    assertThrows(IllegalArgumentException.class, () -> repository.get(" "));
+    // the data is looked up by the normalized ticker, but errors name it as it was typed
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> repository.reload(" no Such ticker "));
+    assertEquals("No price data found for no Such ticker", e.getMessage());
+  }
+}
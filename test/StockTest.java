@@ -1,10 +1,17 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.util.List;
+
+import model.stock.Bar;
 import model.stock.BasicStock;
 import model.stock.Stock;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 
 /**
@@ -80,6 +87,74 @@ public class StockTest {
     assertEquals(65.15, walmart.getClosingPrice("2024-05-21"), 0.01);
   }
 
+  @Test
+  public void testGetClosingPriceRollsBack() {
+    // weekend rolls back to the previous trading day
+    assertEquals(192.25, apple.getClosingPrice("2024-06-02"), 0.01);
+    assertEquals(apple.getIndex("2024-05-31"), apple.getIndex("2024-06-01"));
+
+    // oldest and newest dates in the data
+    assertEquals(77.62, apple.getClosingPrice("1999-11-01"), 0.01);
+    assertEquals(0, apple.getIndex("2024-06-04"));
+    assertEquals(-1, apple.getIndex("1999-10-31"));
+  }
+
+  @Test
+  public void testGetVolume() {
+    assertEquals(47471445, apple.getVolume("2024-06-04"));
+    assertEquals(75158277, apple.getVolume("2024-06-02"));
+    assertThrows(IllegalArgumentException.class, () -> {
+      apple.getVolume("1999-01-10");
+    });
+  }
+
+  @Test
+  public void testGetBars() {
+    List<Bar> bars = apple.getBars("2024-05-31", "2024-06-04");
+    assertEquals(3, bars.size());
+    assertEquals("2024-06-04", bars.get(0).getDate());
+    assertEquals("2024-05-31", bars.get(2).getDate());
+    assertEquals(191.44, bars.get(2).getOpen(), 0.001);
+    assertEquals(192.57, bars.get(2).getHigh(), 0.001);
+    assertEquals(189.91, bars.get(2).getLow(), 0.001);
+    assertEquals(192.25, bars.get(2).getClose(), 0.001);
+    assertEquals(75158277, bars.get(2).getVolume());
+
+    // weekend-only ranges and ranges before the data are empty
+    assertEquals(0, apple.getBars("2024-06-01", "2024-06-02").size());
+    assertEquals(0, apple.getBars("1990-01-01", "1990-12-31").size());
+    assertEquals(2, apple.getBars("1990-01-01", "1999-11-02").size());
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      apple.getBars("2024-06-04", "2024-05-31");
+    });
+  }
+
+  @Test
+  public void testRangeViews() {
+    int start = apple.getIndex("2024-06-04");
+    DoubleBuffer prices = apple.getClosingPrices(start, start + 3);
+    IntBuffer dates = apple.getDates(start, start + 3);
+    assertEquals(3, prices.remaining());
+    assertEquals(apple.getClosingPrice("2024-06-04"), prices.get(0), 0.001);
+    assertEquals(192.25, prices.get(2), 0.001);
+    assertEquals("2024-05-31", LocalDate.ofEpochDay(dates.get(2)).toString());
+    assertFalse(prices.hasArray());
+
+    List<Double> all = apple.getAllClosingPrices();
+    assertEquals(all.size(), apple.getSize());
+    assertEquals(all.get(all.size() - 1),
+            apple.getClosingPrices(0, apple.getSize()).get(apple.getSize() - 1), 0.001);
+    assertEquals(0, apple.getClosingPrices(start, start).remaining());
+
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      apple.getClosingPrices(-1, 2);
+    });
+    assertThrows(IndexOutOfBoundsException.class, () -> {
+      apple.getDates(0, apple.getSize() + 1);
+    });
+  }
+
   @Test
   public void testInvalidDates() {
     // out of range of the csv data (older than the oldest date)
@@ -6,6 +6,7 @@ import java.io.StringReader;
 import controller.IController;
 import controller.Interaction;
 import controller.TextStockController;
+import model.portfolio.BasicPortfolio;
 import model.portfolio.Portfolio;
 import model.user.MockUserData;
 import model.user.UserData;
@@ -65,6 +66,35 @@ public class TextStockControllerTest {
     assertNotEquals("", model.getLog());
   }
 
+  @Test
+  public void testCreateSavedName() throws InterruptedException {
+    // portfolios/test.csv is saved, so a new portfolio cannot take its name
+    run(model, prints(welcomeMessage()), prints(startMenu())
+            , inputs("1"), prints(portfolioMenu())
+            , inputs("1"), prints(namePortfolioPrompt())
+            , inputs("test"), prints(lineSeparator() + "A portfolio named test is already "
+                    + "saved. Load it or choose another name.\n")
+            , prints(portfolioMenu())
+            , inputs("q"), prints(farewellMessage()));
+    assertEquals(0, model.getNumPortfolios());
+  }
+
+  @Test
+  public void testValueAllPortfolios() throws InterruptedException {
+    Portfolio portfolio = new BasicPortfolio("test");
+    portfolio.buyStock("AAPL", 10.0, "2024-06-04");
+    model.addPortfolio(portfolio);
+    run(model, prints(welcomeMessage()), prints(startMenu())
+            , inputs("3"), prints(lineSeparator() + "Year: ")
+            , inputs("2024"), prints(lineSeparator() + "Month (number): ")
+            , inputs("6"), prints(lineSeparator() + "Day: ")
+            , inputs("4"), prints(lineSeparator() + "test: $1943.50\n" + "AAPL: $1943.50\n"
+                    + "Total value on 2024-06-04: $1943.50\n")
+            , prints(startMenu())
+            , inputs("q"), prints(farewellMessage()));
+    assertEquals("add portfolio: test\naggregate portfolio value: \n", model.getLog());
+  }
+
   private void run(UserData model, Interaction... interactions)
           throws InterruptedException {
     StringBuilder userInput = new StringBuilder();
@@ -81,7 +111,7 @@ public class TextStockControllerTest {
 
   private String startMenu() {
     return lineSeparator() + "1: View Portfolios\n" + "2: View Stocks\n"
-            + quitMessage() + selectMenuOptionPrompt();
+            + "3: Value All Portfolios\n" + quitMessage() + selectMenuOptionPrompt();
   }
 
   private String portfolioMenu() {